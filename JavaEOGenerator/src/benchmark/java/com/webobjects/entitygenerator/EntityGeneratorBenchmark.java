@@ -0,0 +1,228 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.entitygenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.webobjects.appserver.WOApplication;
+import com.webobjects.eoaccess.EOEntity;
+import com.webobjects.eogenerator.EOGeneratorApplication;
+
+/**
+ * Runs the generation steps for one entity of a synthetic model, the entity changing on each invocation: the proxy construction, the rendering of the class
+ * template, and the whole generation of the class and sub class files to a destination directory, with the files unchanged since the previous generation or
+ * rewritten. The templates are the ones in the Templates directory, set with -Dbenchmark.templates when the benchmarks do not run from the project directory.
+ * The generated files go to -Dbenchmark.destination, /dev/shm by default so the disk is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityGeneratorBenchmark {
+
+	/**
+	 * Number of entities of the model
+	 */
+	@Param( { "10", "100", "1000" })
+	public int				entities;
+
+	/**
+	 * String attributes of each entity
+	 */
+	@Param( { "10" })
+	public int				attributes;
+
+	/**
+	 * To-one relationships of each entity, each with its inverse to-many relationship
+	 */
+	@Param( { "2" })
+	public int				relationships;
+
+	/**
+	 * Value of the -templateEngine option
+	 */
+	@Param( { "compiled", "component" })
+	public String			templateEngine;
+
+	File					_directory;
+
+	BenchmarkGenerator		_generator;
+
+	List<EOEntity>			_entities;
+
+	List<EOEntityProxy>		_proxies;
+
+	int						_index;
+
+	/**
+	 * Entity generator writing every generated file when rewrites is set, even when the file did not change
+	 */
+	static class BenchmarkGenerator extends EntityGenerator {
+		boolean	_rewrites;
+
+		@Override
+		protected boolean isIdenticalToExistingFile(String generatedFile, File aFile) {
+			return !_rewrites && super.isIdenticalToExistingFile(generatedFile, aFile);
+		}
+
+		@Override
+		protected boolean shouldGenerateSubClassFile(File aFile) {
+			return (_rewrites && (aFile != null)) || super.shouldGenerateSubClassFile(aFile);
+		}
+
+		@Override
+		protected void println(String log) {
+			// The benchmarks do not print the generation log
+		}
+
+		void resetStatistics() {
+			_statistics = null;
+		}
+	}
+
+	/**
+	 * Writes the model, loads it and generates all the entities once
+	 *
+	 * @throws IOException
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		if (WOApplication.application() == null) {
+			WOApplication.primeApplication(null, null, EOGeneratorApplication.class.getName());
+		}
+		File destination = new File(System.getProperty("benchmark.destination", "/dev/shm"));
+		_directory = Files.createTempDirectory((destination.isDirectory() ? destination : new File(System.getProperty("java.io.tmpdir"))).toPath(),
+				"EntityGeneratorBenchmark").toFile();
+		SyntheticModel aModel = new SyntheticModel("Benchmark", entities, attributes, relationships);
+		File modelDirectory = aModel.writeToDirectory(_directory);
+		String templates = System.getProperty("benchmark.templates", "Templates");
+		_generator = new BenchmarkGenerator();
+		_generator.configure(new String[] { "-model", modelDirectory.getAbsolutePath(), "-templatedir", new File(templates).getAbsolutePath(), "-javaTemplate",
+				"JavaSourceEOF52.eotemplate", "-subclassJavaTemplate", "JavaSubclassSourceEOF5.eotemplate", "-destination",
+				new File(_directory, "Sources").getAbsolutePath(), "-packagedirs", "-templateEngine", templateEngine });
+		_generator._models = _generator.loadModels(_generator.models());
+		_entities = _generator.entitiesForModels(_generator._models, new ArrayList<Integer>());
+		_proxies = new ArrayList<EOEntityProxy>();
+		for (EOEntity anEntity : _entities) {
+			_proxies.add(_generator.proxyRegistry().entityProxy(anEntity));
+		}
+		for (EOEntityProxy aProxy : _proxies) {
+			_generator.generateForTargetObject(aProxy);
+		}
+	}
+
+	/**
+	 * Deletes the model and the generated files
+	 *
+	 * @throws IOException
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.walkFileTree(_directory.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exception) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Drops the timings recorded for each generated entity during the previous iteration
+	 */
+	@Setup(Level.Iteration)
+	public void resetStatistics() {
+		_generator.resetStatistics();
+	}
+
+	private int nextIndex() {
+		_index = (_index + 1) % _entities.size();
+		return _index;
+	}
+
+	/**
+	 * Builds the proxy of an entity and the lists of properties the templates iterate on
+	 *
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void proxyConstruction(Blackhole blackhole) {
+		EOEntityProxy aProxy = new EntityProxyRegistry().entityProxy(_entities.get(this.nextIndex()));
+		blackhole.consume(aProxy.classProperties());
+		blackhole.consume(aProxy.classAttributes());
+		blackhole.consume(aProxy.classToOneRelationships());
+		blackhole.consume(aProxy.classToManyRelationships());
+		blackhole.consume(aProxy.classFetchSpecifications());
+	}
+
+	/**
+	 * Renders the class template for an entity
+	 *
+	 * @return rendered class
+	 */
+	@Benchmark
+	public String renderClass() {
+		return _generator.generateClassFileForTargetObject(_proxies.get(this.nextIndex()));
+	}
+
+	/**
+	 * Generates an entity whose files did not change: the class is rendered and compared with the existing file
+	 */
+	@Benchmark
+	public void generateUnchanged() {
+		_generator._rewrites = false;
+		_generator.generateForTargetObject(_proxies.get(this.nextIndex()));
+	}
+
+	/**
+	 * Generates an entity writing the class and sub class files
+	 */
+	@Benchmark
+	public void generateRewrite() {
+		_generator._rewrites = true;
+		_generator.generateForTargetObject(_proxies.get(this.nextIndex()));
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.entitygenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes a synthetic model directory for the benchmarks. Each entity has a primary key, the requested number of string attributes and, for each relationship
+ * rank k, a to-one relationship to the entity k places after it with its foreign key, and the inverse to-many relationship from that entity.
+ */
+public class SyntheticModel {
+
+	private static final Charset	UTF8			= Charset.forName("UTF-8");
+
+	/**
+	 * Package of the entity classes
+	 */
+	public static final String		PackageName		= "com.webobjects.benchmark";
+
+	private String					_name;
+
+	private int						_entityCount;
+
+	private int						_attributeCount;
+
+	private int						_relationshipCount;
+
+	/**
+	 * @param name
+	 *            model name
+	 * @param entityCount
+	 * @param attributeCount
+	 *            string attributes of each entity
+	 * @param relationshipCount
+	 *            to-one relationships of each entity, each with its inverse to-many relationship
+	 */
+	public SyntheticModel(String name, int entityCount, int attributeCount, int relationshipCount) {
+		super();
+		_name = name;
+		_entityCount = entityCount;
+		_attributeCount = attributeCount;
+		_relationshipCount = relationshipCount;
+	}
+
+	/**
+	 * Writes the model directory in the directory
+	 *
+	 * @param directory
+	 * @return model directory
+	 * @throws IOException
+	 */
+	public File writeToDirectory(File directory) throws IOException {
+		File modelDirectory = new File(directory, _name + ".eomodeld");
+		if (!modelDirectory.isDirectory() && !modelDirectory.mkdirs()) {
+			throw new IOException("Cannot create the model directory: '" + modelDirectory + "'");
+		}
+		StringBuilder index = new StringBuilder();
+		index.append("{\n    EOModelVersion = \"2.1\";\n    adaptorName = \"JDBC\";\n    connectionDictionary = {};\n    entities = (\n");
+		for (int entity = 0; entity < _entityCount; entity++) {
+			index.append("        {className = \"").append(this.className(entity)).append("\"; name = \"").append(this.entityName(entity)).append("\"; }");
+			index.append(entity < _entityCount - 1 ? ",\n" : "\n");
+		}
+		index.append("    );\n}\n");
+		SyntheticModel.write(index, new File(modelDirectory, "index.eomodeld"));
+		for (int entity = 0; entity < _entityCount; entity++) {
+			SyntheticModel.write(this.entityPropertyList(entity), new File(modelDirectory, this.entityName(entity) + EntityGenerator.EntityFileExtension));
+		}
+		return modelDirectory;
+	}
+
+	/**
+	 * @param entity
+	 * @return name of the entity at the index
+	 */
+	public String entityName(int entity) {
+		return "Entity" + entity;
+	}
+
+	/**
+	 * @param entity
+	 * @return class name of the entity at the index
+	 */
+	public String className(int entity) {
+		return PackageName + "." + this.entityName(entity);
+	}
+
+	private StringBuilder entityPropertyList(int entity) {
+		StringBuilder attributes = new StringBuilder();
+		StringBuilder relationships = new StringBuilder();
+		StringBuilder classProperties = new StringBuilder();
+		SyntheticModel.appendAttribute(attributes, "id", "ID", "NSNumber", "i", "INTEGER", false);
+		for (int attribute = 0; attribute < _attributeCount; attribute++) {
+			SyntheticModel.appendAttribute(attributes, "value" + attribute, "VALUE" + attribute, "NSString", null, "VARCHAR", true);
+			SyntheticModel.appendName(classProperties, "value" + attribute);
+		}
+		for (int rank = 1; rank <= _relationshipCount; rank++) {
+			int destination = (entity + rank) % _entityCount;
+			int source = (entity - rank + _entityCount * rank) % _entityCount;
+			SyntheticModel.appendAttribute(attributes, "parent" + rank + "ID", "PARENT" + rank + "_ID", "NSNumber", "i", "INTEGER", true);
+			SyntheticModel.appendRelationship(relationships, "parent" + rank, this.entityName(destination), false, "parent" + rank + "ID", "id");
+			SyntheticModel.appendRelationship(relationships, "children" + rank, this.entityName(source), true, "id", "parent" + rank + "ID");
+			SyntheticModel.appendName(classProperties, "parent" + rank);
+			SyntheticModel.appendName(classProperties, "children" + rank);
+		}
+		StringBuilder plist = new StringBuilder();
+		plist.append("{\n    attributes = (\n").append(attributes).append("\n    );\n");
+		plist.append("    attributesUsedForLocking = (\"id\");\n");
+		plist.append("    className = \"").append(this.className(entity)).append("\";\n");
+		plist.append("    classProperties = (").append(classProperties).append(");\n");
+		plist.append("    externalName = \"").append(this.entityName(entity).toUpperCase()).append("\";\n");
+		plist.append("    name = \"").append(this.entityName(entity)).append("\";\n");
+		plist.append("    primaryKeyAttributes = (\"id\");\n");
+		if (relationships.length() > 0) {
+			plist.append("    relationships = (\n").append(relationships).append("\n    );\n");
+		}
+		plist.append("}\n");
+		return plist;
+	}
+
+	private static void appendAttribute(StringBuilder attributes, String name, String columnName, String valueClassName, String valueType, String externalType,
+			boolean allowsNull) {
+		if (attributes.length() > 0) {
+			attributes.append(",\n");
+		}
+		attributes.append("        {allowsNull = ").append(allowsNull ? "Y" : "N").append("; columnName = \"").append(columnName);
+		attributes.append("\"; externalType = \"").append(externalType).append("\"; name = \"").append(name);
+		attributes.append("\"; valueClassName = \"").append(valueClassName).append("\"; ");
+		if (valueType != null) {
+			attributes.append("valueType = \"").append(valueType).append("\"; ");
+		} else {
+			attributes.append("width = 100; ");
+		}
+		attributes.append("}");
+	}
+
+	private static void appendRelationship(StringBuilder relationships, String name, String destination, boolean toMany, String sourceAttribute,
+			String destinationAttribute) {
+		if (relationships.length() > 0) {
+			relationships.append(",\n");
+		}
+		relationships.append("        {destination = \"").append(destination).append("\"; isToMany = ").append(toMany ? "Y" : "N");
+		relationships.append("; joinSemantic = EOInnerJoin; joins = ({destinationAttribute = \"").append(destinationAttribute);
+		relationships.append("\"; sourceAttribute = \"").append(sourceAttribute).append("\"; }); name = \"").append(name).append("\"; }");
+	}
+
+	private static void appendName(StringBuilder names, String name) {
+		if (names.length() > 0) {
+			names.append(", ");
+		}
+		names.append('"').append(name).append('"');
+	}
+
+	private static void write(CharSequence content, File aFile) throws IOException {
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(aFile), UTF8)) {
+			out.append(content);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " name: '" + _name + "' entities: " + _entityCount + " attributes: " + _attributeCount + " relationships: "
+				+ _relationshipCount + " >";
+	}
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Runs the StringUtils name transforms over a set of identifiers, compared with the StringBuffer implementations they replaced, and the memoized name forms of
+ * GeneratorProxy as the templates read them on every render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+	private static final String[]	Words	= { "customer", "order", "line", "item", "amount", "date", "status", "address", "city", "country", "id", "key", "entity", "history", "box" };
+
+	/**
+	 * Number of identifiers
+	 */
+	@Param( { "100000" })
+	public int						count;
+
+	String[]						_identifiers;
+
+	GeneratorProxy<?>[]				_proxies;
+
+	/**
+	 * Builds camel case identifiers of one to four words
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		_identifiers = new String[count];
+		_proxies = new GeneratorProxy<?>[count];
+		for (int index = 0; index < count; index++) {
+			StringBuilder identifier = new StringBuilder();
+			int words = 1 + random.nextInt(4);
+			for (int word = 0; word < words; word++) {
+				String aWord = Words[random.nextInt(Words.length)];
+				identifier.append(word > 0 ? StringUtils.toUppercaseFirstLetter(aWord) : aWord);
+			}
+			_identifiers[index] = identifier.toString();
+			_proxies[index] = new GeneratorProxy<Object>(_identifiers[index], null);
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void camelCaseToUnderscore(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(StringUtils.camelCaseToUnderscore(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void camelCaseToUnderscoreStringBuffer(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(Legacy.camelCaseToUnderscore(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void toUppercaseFirstLetter(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(StringUtils.toUppercaseFirstLetter(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void toUppercaseFirstLetterStringBuffer(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(Legacy.toUppercaseFirstLetter(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void toPlural(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(StringUtils.toPlural(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void toPluralStringBuffer(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(Legacy.toPlural(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void toShortPrettyClassName(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(StringUtils.toShortPrettyClassName(identifier));
+		}
+	}
+
+	/**
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void toShortPrettyClassNameStringBuffer(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(Legacy.toShortPrettyClassName(identifier));
+		}
+	}
+
+	/**
+	 * Name forms read from the proxies, computed on the first iteration only
+	 *
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void memoizedProxyNames(Blackhole blackhole) {
+		for (GeneratorProxy<?> proxy : _proxies) {
+			blackhole.consume(proxy.uppercaseUnderscoreName());
+			blackhole.consume(proxy.initialCapitalName());
+		}
+	}
+
+	/**
+	 * Name forms computed on every read, as the proxies did before
+	 *
+	 * @param blackhole
+	 */
+	@Benchmark
+	public void computedProxyNames(Blackhole blackhole) {
+		for (String identifier : _identifiers) {
+			blackhole.consume(Legacy.camelCaseToUnderscore(identifier).toUpperCase());
+			blackhole.consume(Legacy.toUppercaseFirstLetter(identifier));
+		}
+	}
+
+	/**
+	 * The StringBuffer implementations of the transforms
+	 */
+	static class Legacy {
+
+		static String toShortPrettyClassName(String camelString) {
+			String shortName;
+			int dotIndex = camelString.lastIndexOf('.');
+			if (dotIndex == -1) {
+				shortName = camelString;
+			} else {
+				shortName = camelString.substring(dotIndex + 1);
+			}
+			if (shortName.startsWith("EO")) {
+				shortName = shortName.substring(2);
+			}
+			StringBuffer nameBuffer = new StringBuffer(shortName);
+			for (int i = 0; i < nameBuffer.length(); i++) {
+				char ch = nameBuffer.charAt(i);
+				if (Character.isUpperCase(ch) && i != 0) {
+					nameBuffer.insert(i, ' ');
+					i++;
+				}
+			}
+			return nameBuffer.toString();
+		}
+
+		static String toUppercaseFirstLetter(String name) {
+			int firstLetterIndex = StringUtils.firstLetterIndex(name);
+			String newName;
+			if (firstLetterIndex == -1) {
+				newName = name;
+			} else {
+				StringBuffer sb = new StringBuffer();
+				if (firstLetterIndex > 0) {
+					sb.append(name.substring(0, firstLetterIndex));
+				}
+				sb.append(Character.toUpperCase(name.charAt(firstLetterIndex)));
+				sb.append(name.substring(firstLetterIndex + 1));
+				newName = sb.toString();
+			}
+			return newName;
+		}
+
+		static String camelCaseToUnderscore(String camelString) {
+			StringBuffer underscore = new StringBuffer();
+			boolean lastCharacterWasWordBreak = true;
+			for (int i = 0; i < camelString.length(); i++) {
+				char ch = camelString.charAt(i);
+				if (Character.isUpperCase(ch) && !lastCharacterWasWordBreak) {
+					underscore.append("_");
+					lastCharacterWasWordBreak = true;
+				} else {
+					lastCharacterWasWordBreak = false;
+				}
+				underscore.append(Character.toLowerCase(ch));
+			}
+			return underscore.toString();
+		}
+
+		static String toPlural(String name) {
+			char ch = name.charAt(name.length() - 1);
+			StringBuffer pluralBuffer = new StringBuffer(name);
+			if (ch == 's' || ch == 'x') {
+				pluralBuffer.append("es");
+			} else if (ch == 'y') {
+				pluralBuffer.setLength(pluralBuffer.length() - 1);
+				pluralBuffer.append("ies");
+			} else {
+				pluralBuffer.append("s");
+			}
+			return pluralBuffer.toString();
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares StringUtils.unescapeXMLEntities with the chain of String.replace calls the generator used to post-process the rendered classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnescapeXMLEntitiesBenchmark {
+
+	/**
+	 * Size of the generated source in bytes
+	 */
+	@Param( { "51200" })
+	public int		size;
+
+	/**
+	 * True to include escaped characters in the generated source
+	 */
+	@Param( { "true", "false" })
+	public boolean	escaped;
+
+	String			_generatedSource;
+
+	/**
+	 * Builds a generated class of the requested size
+	 */
+	@Setup
+	public void setUp() {
+		String lessThan = (escaped ? "&lt;" : "<");
+		String greaterThan = (escaped ? "&gt;" : ">");
+		String and = (escaped ? "&amp;&amp;" : "&&");
+		StringBuilder source = new StringBuilder(size + 1024);
+		source.append("package com.example.base;\n\npublic abstract class _Generated extends com.webobjects.eocontrol.EOGenericRecord {\n");
+		for (int index = 0; source.length() < size; index++) {
+			source.append("    public com.webobjects.foundation.NSArray").append(lessThan).append("Item").append(index).append(greaterThan).append(" items").append(index)
+					.append("() {\n");
+			source.append("        if ((this.editingContext() != null) ").append(and).append(" (!this.isReadOnly())) {\n");
+			source.append("            return (com.webobjects.foundation.NSArray)this.storedValueForKey(\"items").append(index).append("\");\n");
+			source.append("        }\n        return com.webobjects.foundation.NSArray.emptyArray();\n    }\n\n");
+		}
+		source.append("}\n");
+		_generatedSource = source.toString();
+	}
+
+	/**
+	 * @return unescaped source
+	 */
+	@Benchmark
+	public String replaceChain() {
+		return _generatedSource.replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&").replace("&quot;", "\"").replace("&apos;", "'");
+	}
+
+	/**
+	 * @return unescaped source
+	 */
+	@Benchmark
+	public String singlePass() {
+		return StringUtils.unescapeXMLEntities(_generatedSource);
+	}
+
+}
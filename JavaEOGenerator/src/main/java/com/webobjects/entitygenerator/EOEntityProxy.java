@@ -13,11 +13,13 @@
 package com.webobjects.entitygenerator;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.webobjects.eoaccess.EOAttribute;
 import com.webobjects.eoaccess.EOEntity;
@@ -41,125 +43,157 @@ public class EOEntityProxy extends GeneratorProxy<EOEntity> {
 
 	private List<EOFetchSpecificationProxy>	_classFetchSpecifications;
 
+	private EntityProxyRegistry				_registry;
+
 	/**
 	 * Constructor
 	 *
 	 * @param entity
 	 */
 	public EOEntityProxy(EOEntity entity) {
+		this(entity, new EntityProxyRegistry());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param entity
+	 * @param registry
+	 *            registry of the proxies of the generation run
+	 */
+	public EOEntityProxy(EOEntity entity, EntityProxyRegistry registry) {
 		super(entity.name(), entity);
+		_registry = registry;
+	}
+
+	/**
+	 * Returns the registry used to create the property proxies
+	 *
+	 * @return proxy registry
+	 */
+	public EntityProxyRegistry registry() {
+		return _registry;
 	}
 
 	/**
-	 * Return the entity class properties
+	 * Return the entity class properties, sorted by name. The properties inherited from the parent entity are not included.
 	 *
 	 * @return entity class properties
 	 */
-	public List<EOPropertyProxy<?>> classProperties() {
+	public synchronized List<EOPropertyProxy<?>> classProperties() {
 		if (_classProperties == null) {
-			EOEntity entity = proxiedObject();
-			Map<String, EOPropertyProxy<?>> list = new TreeMap<String, EOPropertyProxy<?>>();
-			for (EOProperty property : entity.classProperties()) {
-				if ((entity.parentEntity() == null) || (!entity.parentEntity().classProperties().contains(property))) {
-					if (property instanceof EOAttribute) {
-						list.put(property.name(), new EOAttributeProxy((EOAttribute) property));
-					} else if (property instanceof EORelationship) {
-						list.put(property.name(), new EORelationshipProxy((EORelationship) property));
-					} else {
-						// NOW WHAT?
-					}
+			this.classifyProperties();
+		}
+		return _classProperties;
+	}
+
+	/**
+	 * Builds the class properties of the entity and sorts them into attributes, to one and to many relationships in a single pass. Every list is sorted by
+	 * name, so the generated files do not change from one run to the next.
+	 */
+	protected synchronized void classifyProperties() {
+		EOEntity entity = proxiedObject();
+		Set<EOProperty> parentProperties = Collections.newSetFromMap(new IdentityHashMap<EOProperty, Boolean>());
+		if (entity.parentEntity() != null) {
+			parentProperties.addAll(entity.parentEntity().classProperties());
+		}
+		Map<String, EOPropertyProxy<?>> list = new TreeMap<String, EOPropertyProxy<?>>();
+		for (EOProperty property : entity.classProperties()) {
+			if (!parentProperties.contains(property)) {
+				if (property instanceof EOAttribute) {
+					list.put(property.name(), _registry.attributeProxy(property.name(), (EOAttribute) property));
+				} else if (property instanceof EORelationship) {
+					list.put(property.name(), _registry.relationshipProxy(property.name(), (EORelationship) property));
+				} else {
+					// NOW WHAT?
 				}
 			}
-			_classProperties = new ArrayList<EOPropertyProxy<?>>(list.values());
 		}
-		return _classProperties;
+		List<EOAttributeProxy> attributes = new ArrayList<EOAttributeProxy>();
+		List<EORelationshipProxy> relationships = new ArrayList<EORelationshipProxy>();
+		List<EORelationshipProxy> toOneRelationships = new ArrayList<EORelationshipProxy>();
+		List<EORelationshipProxy> toManyRelationships = new ArrayList<EORelationshipProxy>();
+		for (EOPropertyProxy<?> property : list.values()) {
+			if (property instanceof EOAttributeProxy) {
+				attributes.add((EOAttributeProxy) property);
+			} else if (property instanceof EORelationshipProxy) {
+				EORelationshipProxy relationship = (EORelationshipProxy) property;
+				relationships.add(relationship);
+				if (relationship.proxiedObject().isToMany()) {
+					toManyRelationships.add(relationship);
+				} else {
+					toOneRelationships.add(relationship);
+				}
+			}
+		}
+		_classAttributes = attributes;
+		_classRelationships = relationships;
+		_classToOneRelationships = toOneRelationships;
+		_classToManyRelationships = toManyRelationships;
+		_classProperties = new ArrayList<EOPropertyProxy<?>>(list.values());
 	}
 
 	/**
-	 * Returns the entity class attributes
+	 * Returns the entity class attributes, sorted by name
 	 *
 	 * @return entity class attributes
 	 */
-	public List<EOAttributeProxy> classAttributes() {
+	public synchronized List<EOAttributeProxy> classAttributes() {
 		if (_classAttributes == null) {
-			Set<EOAttributeProxy> list = new HashSet<EOAttributeProxy>();
-			for (EOPropertyProxy<?> property : this.classProperties()) {
-				if (property instanceof EOAttributeProxy) {
-					list.add((EOAttributeProxy) property);
-				}
-			}
-			_classAttributes = new ArrayList<EOAttributeProxy>(list);
+			this.classifyProperties();
 		}
 		return _classAttributes;
 	}
 
 	/**
-	 * Returns the entity class relationships
+	 * Returns the entity class relationships, sorted by name
 	 *
 	 * @return entity class relationships
 	 */
-	public List<EORelationshipProxy> classRelationships() {
+	public synchronized List<EORelationshipProxy> classRelationships() {
 		if (_classRelationships == null) {
-			Set<EORelationshipProxy> list = new HashSet<EORelationshipProxy>();
-			for (EOPropertyProxy<?> property : this.classProperties()) {
-				if (property instanceof EORelationshipProxy) {
-					list.add((EORelationshipProxy) property);
-				}
-			}
-			_classRelationships = new ArrayList<EORelationshipProxy>(list);
+			this.classifyProperties();
 		}
 		return _classRelationships;
 	}
 
 	/**
-	 * Returns the entity class to one relationships
+	 * Returns the entity class to one relationships, sorted by name
 	 *
 	 * @return entity class to one relationships
 	 */
-	public List<EORelationshipProxy> classToOneRelationships() {
+	public synchronized List<EORelationshipProxy> classToOneRelationships() {
 		if (_classToOneRelationships == null) {
-			Set<EORelationshipProxy> list = new HashSet<EORelationshipProxy>();
-			for (EORelationshipProxy relationship : this.classRelationships()) {
-				if (!relationship.proxiedObject().isToMany()) {
-					list.add(relationship);
-				}
-			}
-			_classToOneRelationships = new ArrayList<EORelationshipProxy>(list);
+			this.classifyProperties();
 		}
 		return _classToOneRelationships;
 	}
 
 	/**
-	 * Returns the entity class to many relationships
+	 * Returns the entity class to many relationships, sorted by name
 	 *
 	 * @return entity class to many relationships
 	 */
-	public List<EORelationshipProxy> classToManyRelationships() {
+	public synchronized List<EORelationshipProxy> classToManyRelationships() {
 		if (_classToManyRelationships == null) {
-			Set<EORelationshipProxy> list = new HashSet<EORelationshipProxy>();
-			for (EORelationshipProxy relationship : this.classRelationships()) {
-				if (relationship.proxiedObject().isToMany()) {
-					list.add(relationship);
-				}
-			}
-			_classToManyRelationships = new ArrayList<EORelationshipProxy>(list);
+			this.classifyProperties();
 		}
 		return _classToManyRelationships;
 	}
 
 	/**
-	 * Returns the entity named fetch specifications
+	 * Returns the entity named fetch specifications, sorted by name
 	 *
 	 * @return entity named fetch specifications
 	 */
-	public List<EOFetchSpecificationProxy> classFetchSpecifications() {
+	public synchronized List<EOFetchSpecificationProxy> classFetchSpecifications() {
 		if (_classFetchSpecifications == null) {
 			EOEntity entity = proxiedObject();
-			Set<EOFetchSpecificationProxy> list = new HashSet<EOFetchSpecificationProxy>();
-			for (String name : entity.fetchSpecificationNames()) {
-				list.add(new EOFetchSpecificationProxy(name, entity));
+			List<EOFetchSpecificationProxy> list = new ArrayList<EOFetchSpecificationProxy>();
+			for (String name : new TreeSet<String>(entity.fetchSpecificationNames())) {
+				list.add(_registry.fetchSpecificationProxy(name, entity));
 			}
-			_classFetchSpecifications = new ArrayList<EOFetchSpecificationProxy>(list);
+			_classFetchSpecifications = list;
 		}
 		return _classFetchSpecifications;
 	}
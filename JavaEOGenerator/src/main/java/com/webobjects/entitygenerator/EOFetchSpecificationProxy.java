@@ -30,6 +30,8 @@ import com.webobjects.eocontrol.EOQualifier;
 public class EOFetchSpecificationProxy extends EOEntityRelatedProxy<EOFetchSpecification> {
   private List<EOPropertyProxy<?>> _bindings;
 
+  private EntityProxyRegistry _registry;
+
   /**
    * Constructor
    *
@@ -51,7 +53,23 @@ public class EOFetchSpecificationProxy extends EOEntityRelatedProxy<EOFetchSpeci
    * @param entity
    */
   public EOFetchSpecificationProxy(String name, EOFetchSpecification spec, EOEntity entity) {
+    this(name, spec, entity, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param name
+   *            fetch specification name
+   * @param spec
+   *            fetch specification
+   * @param entity
+   * @param registry
+   *            registry of the proxies of the generation run, or null to create new binding proxies
+   */
+  public EOFetchSpecificationProxy(String name, EOFetchSpecification spec, EOEntity entity, EntityProxyRegistry registry) {
     super(name, spec, entity);
+    _registry = registry;
   }
 
   /**
@@ -59,19 +77,22 @@ public class EOFetchSpecificationProxy extends EOEntityRelatedProxy<EOFetchSpeci
    *
    * @return binding name list
    */
-  public List<EOPropertyProxy<?>> bindings() {
+  public synchronized List<EOPropertyProxy<?>> bindings() {
     if (_bindings == null) {
       EOFetchSpecification fetchSpec = proxiedObject();
       Map<String, EOPropertyProxy<?>> list = new TreeMap<String, EOPropertyProxy<?>>();
       EOQualifier qualifier = (fetchSpec != null ? fetchSpec.qualifier() : null);
       if (qualifier != null) {
         for (String bindingName : qualifier.bindingKeys()) {
-          EOProperty bindingAttribute = entity()._propertyForPath(qualifier.keyPathForBindingKey(bindingName));
+          String keyPath = qualifier.keyPathForBindingKey(bindingName);
+          EOProperty bindingAttribute = (_registry != null ? _registry.propertyForPath(keyPath, entity()) : entity()._propertyForPath(keyPath));
           if (bindingAttribute != null) {
             if (bindingAttribute instanceof EOAttribute) {
-              list.put(bindingName, new EOAttributeProxy(bindingName, (EOAttribute)bindingAttribute));
+              EOAttribute attribute = (EOAttribute)bindingAttribute;
+              list.put(bindingName, _registry != null ? _registry.attributeProxy(bindingName, attribute) : new EOAttributeProxy(bindingName, attribute));
             } else if (bindingAttribute instanceof EORelationship) {
-              list.put(bindingName, new EORelationshipProxy(bindingName, (EORelationship)bindingAttribute));
+              EORelationship relationship = (EORelationship)bindingAttribute;
+              list.put(bindingName, _registry != null ? _registry.relationshipProxy(bindingName, relationship) : new EORelationshipProxy(bindingName, relationship));
             }  else {
               // now what?
             }
@@ -12,9 +12,18 @@
  */
 package com.webobjects.entitygenerator;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import com.webobjects.generator.Configuration;
+import com.webobjects.generator.ResolvedConfiguration;
 
 /**
  * @since 5.4
@@ -46,6 +55,21 @@ public class EntityConfiguration extends Configuration {
 	 */
 	public static final String	ReferenceModelOptionKey		= "refmodel";
 
+	/**
+	 * Option key
+	 */
+	public static final String	ModelListOptionKey			= "models";
+
+	/**
+	 * Option key
+	 */
+	public static final String	ModelListFileOptionKey		= "modelList";
+
+	/**
+	 * Option key
+	 */
+	public static final String	WatchOptionKey				= "watch";
+
 	/**
 	 * Option key
 	 */
@@ -71,6 +95,11 @@ public class EntityConfiguration extends Configuration {
 	 */
 	public static final String	SubClassHeaderTemplateKey	= "subclassHeaderTemplate";
 
+	/**
+	 * Option key
+	 */
+	public static final String	ThreadsOptionKey			= "threads";
+
 	/**
 	 * @param argv
 	 */
@@ -99,6 +128,21 @@ public class EntityConfiguration extends Configuration {
 				.addOptionToList(new URLOption(
 						ReferenceModelOptionKey,
 						"Loads the EOModel found at modelpath, but does not generate classes for its entities (unless specific entities are given on the command line, in which case this is the same as -model).  This is useful if you only want to generate entities for one model, but need to load other models to resolve all of the relationships in the main model."));
+		this
+				.addOptionToList(new StringOption(
+						ModelListOptionKey,
+						"Loads all the EOModels of the list, separated by the path separator (':' or ';' on Windows), and generates classes for their entities in a single run.  An URL such as file:/path/Model.eomodeld is kept whole.  The models share one model group, so relationships between them are resolved without -refmodel.",
+						""));
+		this
+				.addOptionToList(new StringOption(
+						ModelListFileOptionKey,
+						"Same as -models with the models read from the file, one model path per line.  Relative paths are relative to the directory of the file, and lines starting with # are ignored.",
+						""));
+		this
+				.addOptionToList(new BooleanOption(
+						WatchOptionKey,
+						"Keeps running after the generation, watching the model directories and the templates.  When an entity or fetch specification file changes, the models are reloaded and the entity, its sub entities and the entities with a relationship to it are generated again.  When a template or the -refmodel model changes, all the entities are generated again.",
+						Boolean.FALSE));
 		this
 				.addOptionToList(new BooleanOption(
 						ForceOptionKey,
@@ -123,6 +167,11 @@ public class EntityConfiguration extends Configuration {
 						SubClassHeaderTemplateKey,
 						"Used to specify alternate template files to use.  File can be an absolute path, a relative path, or a filename found in one of the search path directories.  If not specified, the default templates are used.",
 						""));
+		this
+				.addOptionToList(new IntegerOption(
+						ThreadsOptionKey,
+						"Number of worker threads used to generate the entities.  Each entity is rendered and written by one worker, and the verbose output is still printed in the entity order.  A value of 0 uses one worker per available processor.  By default the entities are generated one at a time.",
+						Integer.valueOf(1)));
 	}
 
 	/**
@@ -171,6 +220,93 @@ public class EntityConfiguration extends Configuration {
 		return (anOption instanceof URLOption ? ((URLOption) anOption).value() : null);
 	}
 
+	/**
+	 * Return the urls of all the models to generate: the model option followed by the models and modelList options.
+	 *
+	 * @return model url list
+	 */
+	public List<URL> models() {
+		List<URL> models = new ArrayList<URL>();
+		if (this.model() != null) {
+			models.add(this.model());
+		}
+		Option anOption = this.optionForName(ModelListOptionKey);
+		String value = (anOption instanceof StringOption ? ((StringOption) anOption).value() : "");
+		for (String path : EntityConfiguration.splitModelList(value, File.pathSeparatorChar)) {
+			this.addModelToList(path, null, models);
+		}
+		anOption = this.optionForName(ModelListFileOptionKey);
+		value = (anOption instanceof StringOption ? ((StringOption) anOption).value() : "");
+		if (value.length() > 0) {
+			File listFile = new File(value);
+			try {
+				for (String line : Files.readAllLines(listFile.toPath(), Charset.forName("UTF-8"))) {
+					if (!line.trim().startsWith("#")) {
+						this.addModelToList(line, listFile.getAbsoluteFile().getParentFile(), models);
+					}
+				}
+			} catch (IOException exception) {
+				System.err.println("Invalid model list " + value + ": " + exception);
+			}
+		}
+		return models;
+	}
+
+	/**
+	 * Splits a list of model paths and urls on the separator. When the separator is ':' an url scheme, like file: or http:, is joined to the rest of its url,
+	 * and so is the port of an url authority, like //host:8080/Model.eomodeld. A scheme has no dot, so a model path ending with .eomodeld is never taken for
+	 * one.
+	 *
+	 * @param value
+	 *            model list
+	 * @param separator
+	 *            path separator
+	 * @return model paths and urls
+	 */
+	static List<String> splitModelList(String value, char separator) {
+		List<String> paths = new ArrayList<String>();
+		String[] segments = value.split(Pattern.quote(String.valueOf(separator)), -1);
+		for (int index = 0; index < segments.length; index++) {
+			String path = segments[index];
+			if (separator == ':') {
+				if (path.trim().matches("[A-Za-z][A-Za-z0-9+-]+") && (index + 1 < segments.length) && segments[index + 1].startsWith("/")) {
+					path = path + ":" + segments[++index];
+				}
+				if ((path.indexOf("://") != -1) && (path.indexOf('/', path.indexOf("://") + 3) == -1) && (index + 1 < segments.length)
+						&& segments[index + 1].matches("[0-9]+(/.*)?")) {
+					path = path + ":" + segments[++index];
+				}
+			}
+			paths.add(path);
+		}
+		return paths;
+	}
+
+	private void addModelToList(String path, File directory, List<URL> models) {
+		String modelPath = path.trim();
+		if (modelPath.length() > 0) {
+			URL modelURL;
+			try {
+				modelURL = new URL(modelPath);
+			} catch (MalformedURLException urlException) {
+				// We do not want to report the exception
+				File aFile = new File(modelPath);
+				if (!aFile.isAbsolute() && (directory != null)) {
+					aFile = new File(directory, modelPath);
+				}
+				try {
+					modelURL = aFile.toURI().toURL();
+				} catch (MalformedURLException fileException) {
+					System.err.println("Invalid model " + modelPath);
+					return;
+				}
+			}
+			if (!models.contains(modelURL)) {
+				models.add(modelURL);
+			}
+		}
+	}
+
 	/**
 	 * Return the url to the prototypes model
 	 *
@@ -194,6 +330,37 @@ public class EntityConfiguration extends Configuration {
 		return (anOption instanceof BooleanOption ? ((BooleanOption) anOption).value() : Boolean.FALSE);
 	}
 
+	/**
+	 * Returns true if the watch option was set.
+	 *
+	 * @return true if the generator keeps running to regenerate the changed entities
+	 */
+	public Boolean watch() {
+		Option anOption = this.optionForName(WatchOptionKey);
+		return (anOption instanceof BooleanOption ? ((BooleanOption) anOption).value() : Boolean.FALSE);
+	}
+
+	/**
+	 * Returns the number of worker threads used for the generation. A value lower than 1 means one thread per available processor.
+	 *
+	 * @return number of worker threads
+	 */
+	public Integer threads() {
+		Option anOption = this.optionForName(ThreadsOptionKey);
+		Integer value = (anOption instanceof IntegerOption ? ((IntegerOption) anOption).value() : Integer.valueOf(1));
+		return (value.intValue() < 1 ? Integer.valueOf(Runtime.getRuntime().availableProcessors()) : value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.Configuration#createResolvedConfiguration()
+	 */
+	@Override
+	protected ResolvedConfiguration createResolvedConfiguration() {
+		return new ResolvedEntityConfiguration(this);
+	}
+
 	/**
 	 * Returns the source template (ObjC)
 	 * <p>
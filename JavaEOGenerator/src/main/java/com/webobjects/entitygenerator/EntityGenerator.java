@@ -12,25 +12,78 @@
  */
 package com.webobjects.entitygenerator;
 
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.webobjects.appserver.WOApplication;
+import com.webobjects.eoaccess.EOAttribute;
 import com.webobjects.eoaccess.EOEntity;
+import com.webobjects.eoaccess.EOJoin;
 import com.webobjects.eoaccess.EOModel;
 import com.webobjects.eoaccess.EOModelGroup;
+import com.webobjects.eoaccess.EOProperty;
+import com.webobjects.eoaccess.EORelationship;
+import com.webobjects.eocontrol.EOFetchSpecification;
 import com.webobjects.eocontrol.EOGenericRecord;
+import com.webobjects.eocontrol.EOQualifier;
+import com.webobjects.eocontrol.EOSortOrdering;
 import com.webobjects.generator.Configuration;
 import com.webobjects.generator.Generator;
 import com.webobjects.generator.GeneratorComponent;
 import com.webobjects.generator.GeneratorContext;
+import com.webobjects.generator.GeneratorFileWatcher;
+import com.webobjects.generator.GeneratorStatistics;
 
 /**
  * @since 5.4
  */
 public class EntityGenerator extends Generator {
 
+	/**
+	 * Proxies of the entities and their properties for the generation run
+	 */
+	protected EntityProxyRegistry	_proxyRegistry;
+
+	/**
+	 * Loaded models by url
+	 */
+	protected Map<URL, EOModel>		_models;
+
+	/**
+	 * Entity file extension in the model directories
+	 */
+	public static final String		EntityFileExtension				= ".plist";
+
+	/**
+	 * Fetch specification file extension in the model directories
+	 */
+	public static final String		FetchSpecificationFileExtension	= ".fspec";
+
+	/**
+	 * Time without change in the watched files before the generation starts, in milliseconds
+	 */
+	public static final long		WatchQuietPeriod				= 200;
+
 	/**
 	 *
 	 */
@@ -99,13 +152,50 @@ public class EntityGenerator extends Generator {
 		this.logStatement("JavaEOGenerator " + WOApplication.application().getWebObjectsVersion(), true);
 	}
 
+	/**
+	 * Return the option values of the entity configuration
+	 *
+	 * @return resolved configuration, or null if the generator is not configured
+	 */
+	protected ResolvedEntityConfiguration resolvedEntityConfiguration() {
+		return (ResolvedEntityConfiguration) _resolvedConfiguration;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.Generator#overwritesReadOnlyFiles()
+	 */
+	@Override
+	protected boolean overwritesReadOnlyFiles() {
+		return (_resolvedConfiguration != null ? this.resolvedEntityConfiguration().force() : false);
+	}
+
 	/**
 	 * Return the url to the model
 	 *
 	 * @return model url
 	 */
 	public URL model() {
-		return (_configuration != null ? ((EntityConfiguration) _configuration).model() : null);
+		return (_resolvedConfiguration != null ? this.resolvedEntityConfiguration().model() : null);
+	}
+
+	/**
+	 * Return the number of worker threads used for the generation
+	 *
+	 * @return number of worker threads
+	 */
+	public int threads() {
+		return (_resolvedConfiguration != null ? this.resolvedEntityConfiguration().threads() : 1);
+	}
+
+	/**
+	 * Return the urls of the models to generate
+	 *
+	 * @return model url list
+	 */
+	public List<URL> models() {
+		return (_resolvedConfiguration != null ? this.resolvedEntityConfiguration().models() : new ArrayList<URL>());
 	}
 
 	/**
@@ -114,7 +204,7 @@ public class EntityGenerator extends Generator {
 	 * @return model url
 	 */
 	public URL referenceModel() {
-		return (_configuration != null ? ((EntityConfiguration) _configuration).referenceModel() : null);
+		return (_resolvedConfiguration != null ? this.resolvedEntityConfiguration().referenceModel() : null);
 	}
 
 	/*
@@ -124,30 +214,607 @@ public class EntityGenerator extends Generator {
 	 */
 	@Override
 	public void generate() {
-		if (this.model() != null) {
+		List<URL> modelURLs = this.models();
+		if (modelURLs.size() > 0) {
 			// Load the models
-			EOModel targetModel = null;
+			long startTime = System.nanoTime();
+			_models = this.loadModels(modelURLs);
+			// And Iterate through the entities
+			List<Integer> modelEntityCounts = new ArrayList<Integer>();
+			List<EOEntity> entities = this.entitiesForModels(_models, modelEntityCounts);
+			// Faults in the entities and the entities their templates reach, once for the whole generation
+			Set<EOEntity> reachedEntities = this.loadEntities(entities);
+			if ((_resolvedConfiguration != null) && _resolvedConfiguration.hasArguments()) {
+				if (this.verbose() || this.showsStatistics()) {
+					this.logStatement("The named entities reach " + reachedEntities.size() + " of the " + this.entityCount() + " entities of the models", true);
+				}
+			}
+			this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.ModelLoad);
+			boolean[] results = this.generateForEntities(entities);
+			if (modelURLs.size() > 1) {
+				this.showModelResults(modelURLs, _models, modelEntityCounts, results);
+			}
+		}
+	}
+
+	/**
+	 * Builds the list of entities for the source generation of all the models. When several models are listed, an entity named on the command line is
+	 * generated with the listed model holding it, and an entity of the reference model with the first model loaded.
+	 *
+	 * @param models
+	 *            loaded models by url
+	 * @param modelEntityCounts
+	 *            list receiving the number of entities of each model
+	 * @return entities list, in model order
+	 */
+	protected List<EOEntity> entitiesForModels(Map<URL, EOModel> models, List<Integer> modelEntityCounts) {
+		List<EOModel> modelList = new ArrayList<EOModel>(models.values());
+		List<List<EOEntity>> entitiesByModel = new ArrayList<List<EOEntity>>();
+		List<EOEntity> namedEntities = (models.size() > 1 ? this.entitiesForModel(null) : Collections.<EOEntity> emptyList());
+		if (namedEntities.size() > 0) {
+			int firstIndex = -1;
+			for (int index = 0; index < modelList.size(); index++) {
+				entitiesByModel.add(new ArrayList<EOEntity>());
+				if ((firstIndex == -1) && (modelList.get(index) != null)) {
+					firstIndex = index;
+				}
+			}
+			for (EOEntity anEntity : namedEntities) {
+				int modelIndex = -1;
+				for (int index = 0; (index < modelList.size()) && (modelIndex == -1); index++) {
+					if ((modelList.get(index) != null) && (modelList.get(index) == anEntity.model())) {
+						modelIndex = index;
+					}
+				}
+				if ((modelIndex == -1) && (firstIndex != -1)) {
+					modelIndex = firstIndex;
+					this.logStatement("Warning: the entity '" + anEntity.name() + "' is not in the listed models, it is generated with the model '"
+							+ modelList.get(firstIndex).name() + "'", true);
+				}
+				if (modelIndex != -1) {
+					entitiesByModel.get(modelIndex).add(anEntity);
+				} else {
+					this.logStatement("Warning: no model was loaded, the entity '" + anEntity.name() + "' is not generated", true);
+				}
+			}
+		} else {
+			for (EOModel aModel : modelList) {
+				entitiesByModel.add(this.entitiesForModel(aModel));
+			}
+		}
+		List<EOEntity> entities = new ArrayList<EOEntity>();
+		for (List<EOEntity> modelEntities : entitiesByModel) {
+			entities.addAll(modelEntities);
+			modelEntityCounts.add(Integer.valueOf(modelEntities.size()));
+		}
+		return entities;
+	}
+
+	/**
+	 * Generates the files for the entities, on the worker threads if the generation uses several threads
+	 *
+	 * @param entities
+	 * @return generation result of each entity, in the order of the list
+	 */
+	protected boolean[] generateForEntities(List<EOEntity> entities) {
+		boolean[] results;
+		int threads = Math.min(this.threads(), entities.size());
+		if (threads > 1) {
+			results = this.generateForEntities(entities, threads);
+		} else {
+			results = new boolean[entities.size()];
+			for (int index = 0; index < entities.size(); index++) {
+				results[index] = this.generateForEntity(entities.get(index));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns true if the watch argument was set.
+	 *
+	 * @return true if the generator watches the models and templates after the generation
+	 */
+	@Override
+	public boolean watches() {
+		return (_resolvedConfiguration != null ? this.resolvedEntityConfiguration().watch() : false);
+	}
+
+	/**
+	 * Watches the models, the reference model and the templates, and regenerates the entities affected by each change. The models stay loaded and the parsed templates stay cached
+	 * between the generations. This method returns when the thread is interrupted.
+	 */
+	@Override
+	public void watch() {
+		if (_models == null) {
+			_models = this.loadModels(this.models());
+		}
+		GeneratorFileWatcher watcher = null;
+		try {
+			watcher = this.createFileWatcher();
+			Map<Path, URL> modelDirectories = new HashMap<Path, URL>();
+			for (URL modelURL : _models.keySet()) {
+				Path directory = this.pathForURL(modelURL);
+				if ((directory != null) && Files.isDirectory(directory)) {
+					watcher.watchDirectory(directory);
+					modelDirectories.put(directory, modelURL);
+				}
+			}
+			// The reference model is only watched, its entities are generated with the models that reference them
+			Path referenceModelDirectory = (this.referenceModel() != null ? this.pathForURL(this.referenceModel()) : null);
+			if ((referenceModelDirectory != null) && Files.isDirectory(referenceModelDirectory) && !modelDirectories.containsKey(referenceModelDirectory)) {
+				watcher.watchDirectory(referenceModelDirectory);
+			} else {
+				referenceModelDirectory = null;
+			}
+			Set<Path> templates = new HashSet<Path>();
+			for (URL templateURL : this.watchedTemplates()) {
+				Path template = this.pathForURL(templateURL);
+				if ((template != null) && Files.isDirectory(template.getParent())) {
+					watcher.watchDirectory(template.getParent());
+					templates.add(template);
+				}
+			}
+			this.logStatement("Watching " + modelDirectories.size() + " models" + (referenceModelDirectory != null ? ", the reference model" : "") + " and "
+					+ templates.size() + " templates for changes", true);
+			while (!Thread.currentThread().isInterrupted()) {
+				boolean templatesChanged = false;
+				Map<URL, Set<String>> changedEntityNames = new LinkedHashMap<URL, Set<String>>();
+				for (Path aPath : watcher.awaitChanges(WatchQuietPeriod)) {
+					if (templates.contains(aPath)) {
+						templatesChanged = true;
+					} else if (modelDirectories.containsKey(aPath)) {
+						// Events were lost, the whole model may have changed
+						changedEntityNames.put(modelDirectories.get(aPath), null);
+					} else if (modelDirectories.containsKey(aPath.getParent())) {
+						this.addChangedModelFile(aPath.getFileName().toString(), modelDirectories.get(aPath.getParent()), changedEntityNames);
+					} else if ((referenceModelDirectory != null) && (aPath.equals(referenceModelDirectory) || referenceModelDirectory.equals(aPath.getParent()))) {
+						// Any entity may reference the changed entities, all the models are regenerated
+						for (URL modelURL : _models.keySet()) {
+							changedEntityNames.put(modelURL, null);
+						}
+					}
+				}
+				if (templatesChanged || (changedEntityNames.size() > 0)) {
+					this.regenerate(changedEntityNames, templatesChanged);
+				}
+				for (Path directory : modelDirectories.keySet()) {
+					// Model editors may save a model by replacing its directory
+					if (Files.isDirectory(directory)) {
+						watcher.watchDirectory(directory);
+					}
+				}
+				if ((referenceModelDirectory != null) && Files.isDirectory(referenceModelDirectory)) {
+					watcher.watchDirectory(referenceModelDirectory);
+				}
+			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		} catch (IOException exception) {
+			this.logStatement("Cannot watch the models and templates: " + exception, true);
+		} finally {
+			if (watcher != null) {
+				try {
+					watcher.close();
+				} catch (IOException exception) {
+					// Nothing to do, we are not watching anymore
+				}
+			}
+		}
+		this.logStatement("End watching", true);
+	}
+
+	/**
+	 * Factory method to create a new file watcher
+	 *
+	 * @return new file watcher
+	 * @throws IOException
+	 */
+	protected GeneratorFileWatcher createFileWatcher() throws IOException {
+		return new GeneratorFileWatcher();
+	}
+
+	/**
+	 * Returns the templates watched for changes
+	 *
+	 * @return template url list
+	 */
+	protected List<URL> watchedTemplates() {
+		List<URL> templates = new ArrayList<URL>();
+		if (_resolvedConfiguration != null) {
+			if (_resolvedConfiguration.javaTemplate() != null) {
+				templates.add(_resolvedConfiguration.javaTemplate());
+			}
+			if (_resolvedConfiguration.subClassJavaTemplate() != null) {
+				templates.add(_resolvedConfiguration.subClassJavaTemplate());
+			}
+		}
+		return templates;
+	}
+
+	private Path pathForURL(URL anURL) {
+		try {
+			return Paths.get(anURL.toURI()).toAbsolutePath().normalize();
+		} catch (Exception exception) {
+			this.logStatement("Cannot watch: '" + anURL + "'", true);
+			return null;
+		}
+	}
+
+	/**
+	 * Records the change of a file in a model directory. A change to an entity or fetch specification file affects the entity, any other model file affects the
+	 * whole model.
+	 *
+	 * @param fileName
+	 * @param modelURL
+	 * @param changedEntityNames
+	 *            changed entity names by model, null for a whole model
+	 */
+	protected void addChangedModelFile(String fileName, URL modelURL, Map<URL, Set<String>> changedEntityNames) {
+		if (fileName.startsWith(".") || fileName.endsWith("~")) {
+			// Editor backup and swap files
+			return;
+		}
+		String entityName = null;
+		if (fileName.endsWith(EntityFileExtension)) {
+			entityName = fileName.substring(0, fileName.length() - EntityFileExtension.length());
+		} else if (fileName.endsWith(FetchSpecificationFileExtension)) {
+			entityName = fileName.substring(0, fileName.length() - FetchSpecificationFileExtension.length());
+		}
+		if (entityName == null) {
+			changedEntityNames.put(modelURL, null);
+		} else if (!changedEntityNames.containsKey(modelURL)) {
+			Set<String> names = new TreeSet<String>();
+			names.add(entityName);
+			changedEntityNames.put(modelURL, names);
+		} else if (changedEntityNames.get(modelURL) != null) {
+			changedEntityNames.get(modelURL).add(entityName);
+		}
+	}
+
+	/**
+	 * Reloads the models and regenerates the entities affected by the changes. The models are all reloaded so that the relationships between the models are
+	 * resolved with the new entities, but only the changed entities, their sub entities and the entities with a relationship to them are generated again.
+	 *
+	 * @param changedEntityNames
+	 *            changed entity names by model, null for a whole model
+	 * @param templatesChanged
+	 *            true to regenerate all the entities
+	 */
+	protected void regenerate(Map<URL, Set<String>> changedEntityNames, boolean templatesChanged) {
+		_statistics = null;
+		// The output directories may have been removed since the last generation
+		this.fileWriter().clear();
+		long startTime = System.nanoTime();
+		Set<String> names = new HashSet<String>();
+		if (changedEntityNames.size() > 0) {
+			_models = this.loadModels(new ArrayList<URL>(_models.keySet()));
+			this.proxyRegistry().clear();
+			for (Map.Entry<URL, Set<String>> aChange : changedEntityNames.entrySet()) {
+				EOModel aModel = _models.get(aChange.getKey());
+				if (aChange.getValue() != null) {
+					names.addAll(aChange.getValue());
+				} else if (aModel != null) {
+					names.addAll(aModel.entityNames());
+				}
+			}
+		}
+		if (templatesChanged) {
+			this.templateEngine().clearTemplates();
+		}
+		List<EOEntity> entities = this.entitiesForModels(_models, new ArrayList<Integer>());
+		if (!templatesChanged) {
+			for (Iterator<EOEntity> iterator = entities.iterator(); iterator.hasNext();) {
+				if (!this.isAffectedByChanges(iterator.next(), names)) {
+					iterator.remove();
+				}
+			}
+		}
+		this.loadEntities(entities);
+		this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.ModelLoad);
+		this.logStatement("Regenerating " + entities.size() + " entities", true);
+		boolean[] results = this.generateForEntities(entities);
+		this.saveManifest();
+		this.statistics().end();
+		this.showStatistics();
+		int failed = 0;
+		for (boolean result : results) {
+			failed += (result ? 0 : 1);
+		}
+		this.logStatement("Regenerated " + (entities.size() - failed) + " entities, " + failed + " failed, in " + ((System.nanoTime() - startTime) / 1000000) + " ms", true);
+	}
+
+	/**
+	 * Checks if the generated files of the entity depend on the changed entities: the entity, its parent entities, the destination of its relationships or
+	 * the entities reached by the binding key paths of its fetch specifications changed.
+	 *
+	 * @param anEntity
+	 * @param names
+	 *            changed entity names
+	 * @return true if the entity needs to be generated again
+	 */
+	protected boolean isAffectedByChanges(EOEntity anEntity, Set<String> names) {
+		for (EOEntity anAncestor = anEntity; anAncestor != null; anAncestor = anAncestor.parentEntity()) {
+			if (names.contains(anAncestor.name())) {
+				return true;
+			}
+		}
+		for (EORelationship aRelationship : anEntity.relationships()) {
+			EOEntity destinationEntity = aRelationship.destinationEntity();
+			if ((destinationEntity != null) && names.contains(destinationEntity.name())) {
+				return true;
+			}
+		}
+		for (String keyPath : this.bindingKeyPaths(anEntity)) {
+			for (EOEntity pathEntity : this.entitiesForKeyPath(keyPath, anEntity)) {
+				if (names.contains(pathEntity.name())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the key paths the bindings of the fetch specifications of the entity resolve to
+	 *
+	 * @param anEntity
+	 * @return binding key paths
+	 */
+	protected List<String> bindingKeyPaths(EOEntity anEntity) {
+		List<String> keyPaths = new ArrayList<String>();
+		for (String name : anEntity.fetchSpecificationNames()) {
+			EOFetchSpecification fetchSpecification = anEntity.fetchSpecificationNamed(name);
+			EOQualifier qualifier = (fetchSpecification != null ? fetchSpecification.qualifier() : null);
+			if (qualifier != null) {
+				for (String bindingName : qualifier.bindingKeys()) {
+					String keyPath = qualifier.keyPathForBindingKey(bindingName);
+					if (keyPath != null) {
+						keyPaths.add(keyPath);
+					}
+				}
+			}
+		}
+		return keyPaths;
+	}
+
+	/**
+	 * Returns the destination entities of the relationships of the key path, as EOFetchSpecificationProxy resolves it
+	 *
+	 * @param keyPath
+	 * @param anEntity
+	 *            entity the key path starts from
+	 * @return reached entities, in key path order
+	 */
+	protected List<EOEntity> entitiesForKeyPath(String keyPath, EOEntity anEntity) {
+		List<EOEntity> entities = new ArrayList<EOEntity>();
+		EOEntity pathEntity = anEntity;
+		for (String key : keyPath.split("\\.")) {
+			EORelationship aRelationship = pathEntity.relationshipNamed(key);
+			pathEntity = (aRelationship != null ? aRelationship.destinationEntity() : null);
+			if (pathEntity == null) {
+				break;
+			}
+			entities.add(pathEntity);
+		}
+		return entities;
+	}
+
+	/**
+	 * Loads the models in a new default model group, with the reference model
+	 *
+	 * @param modelURLs
+	 * @return loaded models by url, null for the models that could not be loaded
+	 */
+	protected Map<URL, EOModel> loadModels(List<URL> modelURLs) {
+		Map<URL, EOModel> models = new LinkedHashMap<URL, EOModel>();
+		EOModelGroup group = new EOModelGroup();
+		for (URL modelURL : modelURLs) {
+			EOModel aModel = null;
 			try {
-				targetModel = new EOModel(this.model());
-				EOModelGroup group = new EOModelGroup();
-				group.addModel(targetModel);
-				if (this.referenceModel() != null)
-					group.addModelWithPathURL(this.referenceModel());
-				EOModelGroup.setDefaultGroup(group);
+				aModel = new EOModel(modelURL);
+				group.addModel(aModel);
 			} catch (Exception exception) {
-				this.logStatement("Cannot load model: '" + this.model() + "'", true);
+				this.logStatement("Cannot load model: '" + modelURL + "'", true);
+				aModel = null;
 			}
-			// And Iterate through the entities
-			for (EOEntity anEntity : this.entitiesForModel(targetModel)) {
+			models.put(modelURL, aModel);
+		}
+		try {
+			if (this.referenceModel() != null)
+				group.addModelWithPathURL(this.referenceModel());
+		} catch (Exception exception) {
+			this.logStatement("Cannot load model: '" + this.referenceModel() + "'", true);
+		}
+		EOModelGroup.setDefaultGroup(group);
+		return models;
+	}
+
+	/**
+	 * Prints the number of entities generated and failed for each model of a batch generation
+	 *
+	 * @param modelURLs
+	 * @param models
+	 * @param modelEntityCounts
+	 *            number of entities of each model
+	 * @param results
+	 *            generation result of each entity, in model order
+	 */
+	protected void showModelResults(List<URL> modelURLs, Map<URL, EOModel> models, List<Integer> modelEntityCounts, boolean[] results) {
+		int index = 0;
+		int failedModels = 0;
+		for (int modelIndex = 0; modelIndex < modelURLs.size(); modelIndex++) {
+			EOModel aModel = models.get(modelURLs.get(modelIndex));
+			int count = modelEntityCounts.get(modelIndex).intValue();
+			int failed = 0;
+			for (int entityIndex = 0; entityIndex < count; entityIndex++, index++) {
+				if (!results[index]) {
+					failed++;
+				}
+			}
+			if (aModel == null) {
+				failedModels++;
+				this.logStatement("Model '" + modelURLs.get(modelIndex) + "': not loaded", true);
+			} else {
+				if (failed > 0) {
+					failedModels++;
+				}
+				this.logStatement("Model '" + aModel.name() + "': " + (count - failed) + " entities generated, " + failed + " failed", true);
+			}
+		}
+		this.logStatement("Generated " + modelURLs.size() + " models, " + failedModels + " with errors", true);
+	}
+
+	/**
+	 * Generates the files for the entity
+	 *
+	 * @param anEntity
+	 * @return true if the entity was generated without exception
+	 */
+	protected boolean generateForEntity(EOEntity anEntity) {
+		try {
+			if (this.verbose()) {
+				this.logStatement("Generating for entity: '" + anEntity.name() + "'", true);
+			}
+			this.generateForTargetObject(this.proxyRegistry().entityProxy(anEntity));
+			if (this.verbose()) {
+				this.logStatement("Finished generating for entity: '" + anEntity.name() + "'", true);
+			}
+			return true;
+		} catch (Exception exception) {
+			// Logged, so a worker prints the stack trace with the log of its entity
+			this.logException(exception);
+			this.logStatement("Cannot generate file for entity: '" + anEntity.name() + "' exception " + exception, true);
+			this.recordFailedObject(anEntity.name());
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the registry of the proxies of the generation run. An entity, property or fetch specification is proxied once, whichever template reaches it.
+	 *
+	 * @return proxy registry
+	 */
+	public synchronized EntityProxyRegistry proxyRegistry() {
+		if (_proxyRegistry == null) {
+			_proxyRegistry = this.createProxyRegistry();
+		}
+		return _proxyRegistry;
+	}
+
+	/**
+	 * Factory method to create a new proxy registry
+	 *
+	 * @return new proxy registry
+	 */
+	protected EntityProxyRegistry createProxyRegistry() {
+		return new EntityProxyRegistry();
+	}
+
+	/**
+	 * Generates the files for the entities on a pool of worker threads. Each entity is generated in its own context, and the log of each entity is printed in
+	 * the order of the list once its generation is complete, so the output is the same as a sequential generation. The entities must have been faulted in by
+	 * loadEntities(List), as the models do not load entities safely from several threads.
+	 *
+	 * @param entities
+	 * @param threads
+	 *            number of worker threads
+	 * @return generation result of each entity, in the order of the list
+	 */
+	protected boolean[] generateForEntities(List<EOEntity> entities, int threads) {
+		final boolean[] results = new boolean[entities.size()];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<List<String>> logs = new ArrayList<List<String>>(entities.size());
+			List<Future<?>> tasks = new ArrayList<Future<?>>(entities.size());
+			for (int index = 0; index < entities.size(); index++) {
+				final EOEntity anEntity = entities.get(index);
+				final int entityIndex = index;
+				final List<String> log = new ArrayList<String>();
+				logs.add(log);
+				tasks.add(executor.submit(new Runnable() {
+					public void run() {
+						EntityGenerator.this.runInWorkerContext(new Runnable() {
+							public void run() {
+								results[entityIndex] = EntityGenerator.this.generateForEntity(anEntity);
+							}
+						}, log);
+					}
+				}));
+			}
+			for (int index = 0; index < tasks.size(); index++) {
+				Throwable failure = null;
 				try {
-					this.logStatement("Generating for entity: '" + anEntity.name() + "'");
-					this.generateForTargetObject(new EOEntityProxy(anEntity));
-					this.logStatement("Finished generating for entity: '" + anEntity.name() + "'");
-				} catch (Exception exception) {
-					exception.printStackTrace();
-					this.logStatement("Cannot generate file for entity: '" + anEntity.name() + "' exception " + exception, true);
+					tasks.get(index).get();
+				} catch (ExecutionException exception) {
+					failure = exception.getCause();
+				}
+				// The statements logged before a failure are the diagnostics of the entity
+				this.printLog(logs.get(index));
+				if (failure != null) {
+					this.logException(failure);
+					this.logStatement("Cannot generate file for entity: '" + entities.get(index).name() + "' exception " + failure, true);
+					this.recordFailedObject(entities.get(index).name());
 				}
 			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			this.logStatement("Generation interrupted", true);
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Faults in what the templates and the proxies read through the entity: the properties of the entity, of its parent entities and of the destination
+	 * entities of its relationships, its fetch specifications, and the entities crossed by the key paths of their bindings.
+	 *
+	 * @param anEntity
+	 * @param reachedEntities
+	 *            set receiving the entities reached
+	 */
+	protected void faultEntity(EOEntity anEntity, Set<EOEntity> reachedEntities) {
+		for (EOEntity anAncestor = anEntity; anAncestor != null; anAncestor = anAncestor.parentEntity()) {
+			this.faultProperties(anAncestor, reachedEntities);
+		}
+		for (EORelationship aRelationship : anEntity.relationships()) {
+			EOEntity destinationEntity = aRelationship.destinationEntity();
+			if (destinationEntity != null) {
+				this.faultProperties(destinationEntity, reachedEntities);
+			}
+		}
+		for (String keyPath : this.bindingKeyPaths(anEntity)) {
+			this.proxyRegistry().propertyForPath(keyPath, anEntity);
+			for (EOEntity pathEntity : this.entitiesForKeyPath(keyPath, anEntity)) {
+				this.faultProperties(pathEntity, reachedEntities);
+			}
+		}
+	}
+
+	private void faultProperties(EOEntity anEntity, Set<EOEntity> reachedEntities) {
+		if (reachedEntities.add(anEntity)) {
+			anEntity.classProperties();
+			anEntity.attributes();
+			anEntity.relationships();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.Generator#prepareTargetObject(java.lang.Object)
+	 */
+	@Override
+	protected void prepareTargetObject(Object targetObject) {
+		if (targetObject instanceof EOEntityProxy) {
+			// Builds the property proxies the templates iterate on
+			EOEntityProxy entityProxy = (EOEntityProxy) targetObject;
+			entityProxy.classProperties();
+			entityProxy.classAttributes();
+			entityProxy.classToOneRelationships();
+			entityProxy.classToManyRelationships();
+			entityProxy.classFetchSpecifications();
 		}
 	}
 
@@ -174,12 +841,14 @@ public class EntityGenerator extends Generator {
 	 */
 	protected List<EOEntity> entitiesForModel(EOModel model) {
 		List<EOEntity> entityList = new ArrayList<EOEntity>();
-		if ((_configuration != null) && _configuration.hasArguments()) {
+		if ((_resolvedConfiguration != null) && _resolvedConfiguration.hasArguments()) {
 			// We generate for a subset of the entities
-			for (String entityName : _configuration.arguments()) {
+			for (String entityName : _resolvedConfiguration.arguments()) {
 				EOEntity anEntity = EOModelGroup.defaultGroup().entityNamed(entityName);
 				if (anEntity != null) {
 					entityList.add(anEntity);
+				} else {
+					this.logStatement("Entity not found: '" + entityName + "'", true);
 				}
 			}
 		}
@@ -191,9 +860,252 @@ public class EntityGenerator extends Generator {
 				}
 			}
 		}
+		if ((_resolvedConfiguration != null) && _resolvedConfiguration.isSharded()) {
+			entityList = this.entitiesForShard(entityList, _resolvedConfiguration.shardIndex(), _resolvedConfiguration.shardCount());
+		}
+		return entityList;
+	}
+
+	/**
+	 * Returns the entities of a shard of the generation. The entities are assigned by decreasing weight to the least loaded shard, starting from the shard of
+	 * the hash of their name, so all the processes generating the same models compute the same partition and the shards have about the same number of
+	 * properties to generate.
+	 *
+	 * @param entities
+	 * @param index
+	 *            index of the shard from 1 to count
+	 * @param count
+	 *            number of shards
+	 * @return entities of the shard, in the order of the list
+	 */
+	protected List<EOEntity> entitiesForShard(List<EOEntity> entities, int index, int count) {
+		final Map<EOEntity, Integer> weights = new IdentityHashMap<EOEntity, Integer>();
+		for (EOEntity anEntity : entities) {
+			weights.put(anEntity, Integer.valueOf(this.shardWeightForEntity(anEntity)));
+		}
+		List<EOEntity> sortedEntities = new ArrayList<EOEntity>(entities);
+		Collections.sort(sortedEntities, new Comparator<EOEntity>() {
+			public int compare(EOEntity entity1, EOEntity entity2) {
+				int result = weights.get(entity2).compareTo(weights.get(entity1));
+				return (result != 0 ? result : entity1.name().compareTo(entity2.name()));
+			}
+		});
+		long[] loads = new long[count];
+		Set<EOEntity> shardEntities = Collections.newSetFromMap(new IdentityHashMap<EOEntity, Boolean>());
+		for (EOEntity anEntity : sortedEntities) {
+			int first = (anEntity.name().hashCode() & Integer.MAX_VALUE) % count;
+			int shard = first;
+			for (int offset = 1; offset < count; offset++) {
+				int candidate = (first + offset) % count;
+				if (loads[candidate] < loads[shard]) {
+					shard = candidate;
+				}
+			}
+			loads[shard] += weights.get(anEntity).intValue();
+			if (shard == index - 1) {
+				shardEntities.add(anEntity);
+			}
+		}
+		List<EOEntity> entityList = new ArrayList<EOEntity>();
+		for (EOEntity anEntity : entities) {
+			if (shardEntities.contains(anEntity)) {
+				entityList.add(anEntity);
+			}
+		}
+		if (this.verbose()) {
+			this.logStatement("Shard " + index + "/" + count + ": " + entityList.size() + " of " + entities.size() + " entities", true);
+		}
 		return entityList;
 	}
 
+	/**
+	 * Returns the weight of the entity in the partition of the shards: one plus the number of its attributes and relationships
+	 *
+	 * @param anEntity
+	 * @return weight
+	 */
+	protected int shardWeightForEntity(EOEntity anEntity) {
+		return 1 + anEntity.attributes().count() + anEntity.relationships().count();
+	}
+
+	/**
+	 * Faults in the entities the generation of the listed entities depends on, see faultEntity(EOEntity, Set). A model only reads the definition of an entity
+	 * when the entity is first requested, so the entities no listed entity reaches are not read when entities are named on the command line. The entities are
+	 * faulted in before the generation starts as the models do not load entities safely from several threads.
+	 *
+	 * @param entities
+	 * @return entities reached from the listed entities, including them
+	 */
+	protected Set<EOEntity> loadEntities(List<EOEntity> entities) {
+		Set<EOEntity> reachedEntities = Collections.newSetFromMap(new IdentityHashMap<EOEntity, Boolean>());
+		for (EOEntity anEntity : entities) {
+			this.faultEntity(anEntity, reachedEntities);
+		}
+		return reachedEntities;
+	}
+
+	/**
+	 * Returns the number of entities of the models in the default model group, as listed by the model indexes
+	 *
+	 * @return number of entities
+	 */
+	protected int entityCount() {
+		int count = 0;
+		for (EOModel aModel : EOModelGroup.defaultGroup().models()) {
+			count += aModel.entityNames().count();
+		}
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.Generator#manifestKeyForTargetObject(java.lang.Object)
+	 */
+	@Override
+	protected String manifestKeyForTargetObject(Object targetObject) {
+		if (targetObject instanceof EOEntityProxy) {
+			return ((EOEntityProxy) targetObject).proxiedObject().name();
+		} else {
+			return super.manifestKeyForTargetObject(targetObject);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.Generator#appendFingerprintForTargetObject(java.lang.Object, java.lang.StringBuilder)
+	 */
+	@Override
+	protected void appendFingerprintForTargetObject(Object targetObject, StringBuilder description) {
+		if (targetObject instanceof EOEntityProxy) {
+			this.appendFingerprintForEntity(((EOEntityProxy) targetObject).proxiedObject(), description);
+		} else {
+			super.appendFingerprintForTargetObject(targetObject, description);
+		}
+	}
+
+	/**
+	 * Appends the definition of the entity to the fingerprint: attributes, relationships, fetch specifications with the properties their bindings resolve to,
+	 * and the parent entities.
+	 *
+	 * @param anEntity
+	 * @param description
+	 */
+	protected void appendFingerprintForEntity(EOEntity anEntity, StringBuilder description) {
+		description.append("entity: ").append(anEntity.name()).append(' ').append(anEntity.className());
+		description.append(" abstract: ").append(anEntity.isAbstractEntity());
+		description.append(" userInfo: ").append(anEntity.userInfo()).append('\n');
+		description.append("class properties: ").append(new TreeSet<String>(anEntity.classPropertyNames())).append('\n');
+		Map<String, EOAttribute> attributes = new TreeMap<String, EOAttribute>();
+		for (EOAttribute anAttribute : anEntity.attributes()) {
+			attributes.put(anAttribute.name(), anAttribute);
+		}
+		for (EOAttribute anAttribute : attributes.values()) {
+			description.append("attribute: ").append(anAttribute.name());
+			description.append(' ').append(anAttribute.className());
+			description.append(' ').append(anAttribute.valueType());
+			description.append(' ').append(anAttribute.valueTypeClassName());
+			description.append(' ').append(anAttribute.columnName());
+			description.append(' ').append(anAttribute.definition());
+			description.append(' ').append(anAttribute.externalType());
+			description.append(' ').append(anAttribute.prototypeName());
+			description.append(' ').append(anAttribute.allowsNull());
+			description.append(' ').append(anAttribute.width());
+			description.append(' ').append(anAttribute.precision());
+			description.append(' ').append(anAttribute.scale()).append('\n');
+		}
+		Map<String, EORelationship> relationships = new TreeMap<String, EORelationship>();
+		for (EORelationship aRelationship : anEntity.relationships()) {
+			relationships.put(aRelationship.name(), aRelationship);
+		}
+		for (EORelationship aRelationship : relationships.values()) {
+			EOEntity destinationEntity = aRelationship.destinationEntity();
+			description.append("relationship: ").append(aRelationship.name());
+			description.append(' ').append(destinationEntity != null ? destinationEntity.name() + " " + destinationEntity.className() : null);
+			description.append(' ').append(aRelationship.definition());
+			description.append(' ').append(aRelationship.isToMany());
+			description.append(' ').append(aRelationship.isMandatory());
+			description.append(' ').append(aRelationship.deleteRule());
+			description.append(' ').append(aRelationship.ownsDestination());
+			description.append(' ').append(aRelationship.propagatesPrimaryKey());
+			for (EOJoin aJoin : aRelationship.joins()) {
+				description.append(' ').append(aJoin.sourceAttribute().name()).append('=').append(aJoin.destinationAttribute().name());
+			}
+			description.append('\n');
+		}
+		for (String name : new TreeSet<String>(anEntity.fetchSpecificationNames())) {
+			this.appendFingerprintForFetchSpecification(anEntity, name, description);
+		}
+		if (anEntity.parentEntity() != null) {
+			description.append("parent ");
+			this.appendFingerprintForEntity(anEntity.parentEntity(), description);
+		}
+	}
+
+	/**
+	 * Appends the definition of a fetch specification to the fingerprint. The properties the binding key paths resolve to are part of it, as the templates read
+	 * their types, and the key paths may cross other entities.
+	 *
+	 * @param anEntity
+	 * @param name
+	 *            name of the fetch specification
+	 * @param description
+	 */
+	protected void appendFingerprintForFetchSpecification(EOEntity anEntity, String name, StringBuilder description) {
+		EOFetchSpecification fetchSpecification = anEntity.fetchSpecificationNamed(name);
+		description.append("fetch specification: ").append(name);
+		if (fetchSpecification == null) {
+			description.append('\n');
+			return;
+		}
+		EOQualifier qualifier = fetchSpecification.qualifier();
+		description.append(' ').append(fetchSpecification.entityName());
+		description.append(" qualifier: ").append(qualifier);
+		description.append(" sort:");
+		if (fetchSpecification.sortOrderings() != null) {
+			for (EOSortOrdering aSortOrdering : fetchSpecification.sortOrderings()) {
+				description.append(' ').append(aSortOrdering.key()).append(' ').append(aSortOrdering.selector() != null ? aSortOrdering.selector().name() : null);
+			}
+		}
+		description.append(" limit: ").append(fetchSpecification.fetchLimit());
+		description.append(' ').append(fetchSpecification.promptsAfterFetchLimit());
+		description.append(' ').append(fetchSpecification.usesDistinct());
+		description.append(' ').append(fetchSpecification.isDeep());
+		description.append(' ').append(fetchSpecification.locksObjects());
+		description.append(' ').append(fetchSpecification.refreshesRefetchedObjects());
+		description.append(' ').append(fetchSpecification.fetchesRawRows());
+		description.append(" raw rows: ").append(fetchSpecification.rawRowKeyPaths());
+		description.append(" prefetch: ").append(fetchSpecification.prefetchingRelationshipKeyPaths());
+		description.append(" hints:");
+		if (fetchSpecification.hints() != null) {
+			for (String aKey : new TreeSet<String>(fetchSpecification.hints().allKeys())) {
+				description.append(' ').append(aKey).append('=').append(fetchSpecification.hints().objectForKey(aKey));
+			}
+		}
+		description.append('\n');
+		if (qualifier != null) {
+			for (String bindingName : new TreeSet<String>(qualifier.bindingKeys())) {
+				String keyPath = qualifier.keyPathForBindingKey(bindingName);
+				EOProperty aProperty = (keyPath != null ? this.proxyRegistry().propertyForPath(keyPath, anEntity) : null);
+				description.append("binding: ").append(bindingName).append(' ').append(keyPath);
+				if (aProperty instanceof EOAttribute) {
+					EOAttribute anAttribute = (EOAttribute) aProperty;
+					description.append(" attribute ").append(anAttribute.name());
+					description.append(' ').append(anAttribute.className());
+					description.append(' ').append(anAttribute.valueTypeClassName());
+				} else if (aProperty instanceof EORelationship) {
+					EORelationship aRelationship = (EORelationship) aProperty;
+					EOEntity destinationEntity = aRelationship.destinationEntity();
+					description.append(" relationship ").append(aRelationship.name());
+					description.append(' ').append(destinationEntity != null ? destinationEntity.className() : null);
+					description.append(' ').append(aRelationship.isToMany());
+				}
+				description.append('\n');
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
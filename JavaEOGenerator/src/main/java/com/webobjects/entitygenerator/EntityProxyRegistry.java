@@ -0,0 +1,182 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.entitygenerator;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.webobjects.eoaccess.EOAttribute;
+import com.webobjects.eoaccess.EOEntity;
+import com.webobjects.eoaccess.EOProperty;
+import com.webobjects.eoaccess.EORelationship;
+import com.webobjects.generator.GeneratorProxy;
+
+/**
+ * Registry of the proxies of a generation run. Each model object is proxied once per name, so the lazy lists and names computed by a proxy are shared by every
+ * template that reaches the same entity, property or fetch specification. Model objects are compared by identity.
+ * <p>
+ * The registry also caches the properties the key paths of the fetch specification bindings resolve to, so a key path used by several fetch specifications
+ * of an entity is resolved once.
+ * </p>
+ */
+public class EntityProxyRegistry {
+
+	private Map<Object, Map<String, GeneratorProxy<?>>>	_proxies;
+
+	private Map<EOEntity, Map<String, EOProperty>>			_propertiesForPaths;
+
+	/**
+	 * Sole constructor
+	 */
+	public EntityProxyRegistry() {
+		super();
+		_proxies = new IdentityHashMap<Object, Map<String, GeneratorProxy<?>>>();
+		_propertiesForPaths = new IdentityHashMap<EOEntity, Map<String, EOProperty>>();
+	}
+
+	/**
+	 * Returns the proxy of the entity
+	 *
+	 * @param entity
+	 * @return entity proxy
+	 */
+	public synchronized EOEntityProxy entityProxy(EOEntity entity) {
+		EOEntityProxy proxy = (EOEntityProxy) this.registeredProxy(entity, entity.name());
+		if (proxy == null) {
+			proxy = new EOEntityProxy(entity, this);
+			this.registerProxy(proxy, entity, entity.name());
+		}
+		return proxy;
+	}
+
+	/**
+	 * Returns the proxy of the attribute under the name
+	 *
+	 * @param name
+	 *            attribute name or fetch specification binding name
+	 * @param attribute
+	 * @return attribute proxy
+	 */
+	public synchronized EOAttributeProxy attributeProxy(String name, EOAttribute attribute) {
+		EOAttributeProxy proxy = (EOAttributeProxy) this.registeredProxy(attribute, name);
+		if (proxy == null) {
+			proxy = new EOAttributeProxy(name, attribute);
+			this.registerProxy(proxy, attribute, name);
+		}
+		return proxy;
+	}
+
+	/**
+	 * Returns the proxy of the relationship under the name
+	 *
+	 * @param name
+	 *            relationship name or fetch specification binding name
+	 * @param relationship
+	 * @return relationship proxy
+	 */
+	public synchronized EORelationshipProxy relationshipProxy(String name, EORelationship relationship) {
+		EORelationshipProxy proxy = (EORelationshipProxy) this.registeredProxy(relationship, name);
+		if (proxy == null) {
+			proxy = new EORelationshipProxy(name, relationship);
+			this.registerProxy(proxy, relationship, name);
+		}
+		return proxy;
+	}
+
+	/**
+	 * Returns the proxy of the named fetch specification of the entity
+	 *
+	 * @param name
+	 *            fetch specification name
+	 * @param entity
+	 * @return fetch specification proxy
+	 */
+	public synchronized EOFetchSpecificationProxy fetchSpecificationProxy(String name, EOEntity entity) {
+		// The entity is the key: the fetch specification may be shared or missing
+		String key = EOFetchSpecificationProxy.class.getName() + "." + name;
+		EOFetchSpecificationProxy proxy = (EOFetchSpecificationProxy) this.registeredProxy(entity, key);
+		if (proxy == null) {
+			proxy = new EOFetchSpecificationProxy(name, entity.fetchSpecificationNamed(name), entity, this);
+			this.registerProxy(proxy, entity, key);
+		}
+		return proxy;
+	}
+
+	/**
+	 * Returns the property the key path resolves to from the entity. The result, including a path that does not resolve, is cached for the entity.
+	 *
+	 * @param keyPath
+	 * @param entity
+	 * @return attribute or relationship, or null if the key path does not resolve to a property
+	 */
+	public synchronized EOProperty propertyForPath(String keyPath, EOEntity entity) {
+		Map<String, EOProperty> properties = _propertiesForPaths.get(entity);
+		if (properties == null) {
+			properties = new HashMap<String, EOProperty>();
+			_propertiesForPaths.put(entity, properties);
+		}
+		EOProperty property = properties.get(keyPath);
+		if ((property == null) && !properties.containsKey(keyPath)) {
+			property = entity._propertyForPath(keyPath);
+			properties.put(keyPath, property);
+		}
+		return property;
+	}
+
+	/**
+	 * Returns the number of registered proxies
+	 *
+	 * @return number of proxies
+	 */
+	public synchronized int count() {
+		int count = 0;
+		for (Map<String, GeneratorProxy<?>> proxies : _proxies.values()) {
+			count += proxies.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all the proxies and the resolved key paths. The next requests create new proxies, for example after the model was reloaded.
+	 */
+	public synchronized void clear() {
+		_proxies.clear();
+		_propertiesForPaths.clear();
+	}
+
+	private GeneratorProxy<?> registeredProxy(Object object, String name) {
+		Map<String, GeneratorProxy<?>> proxies = _proxies.get(object);
+		return (proxies != null ? proxies.get(name) : null);
+	}
+
+	private void registerProxy(GeneratorProxy<?> proxy, Object object, String name) {
+		Map<String, GeneratorProxy<?>> proxies = _proxies.get(object);
+		if (proxies == null) {
+			proxies = new HashMap<String, GeneratorProxy<?>>(4);
+			_proxies.put(object, proxies);
+		}
+		proxies.put(name, proxy);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " proxies: " + this.count() + " >";
+	}
+
+}
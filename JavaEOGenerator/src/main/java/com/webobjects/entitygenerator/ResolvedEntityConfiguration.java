@@ -0,0 +1,97 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.entitygenerator;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.webobjects.generator.ResolvedConfiguration;
+
+/**
+ * Immutable snapshot of the option values of an entity configuration
+ *
+ * @see EntityConfiguration#resolvedConfiguration()
+ */
+public class ResolvedEntityConfiguration extends ResolvedConfiguration {
+
+	private final URL		_model;
+
+	private final List<URL>	_models;
+
+	private final URL		_referenceModel;
+
+	private final boolean	_force;
+
+	private final boolean	_watch;
+
+	private final int		_threads;
+
+	/**
+	 * @param configuration
+	 *            configuration with decoded options
+	 */
+	public ResolvedEntityConfiguration(EntityConfiguration configuration) {
+		super(configuration);
+		_model = configuration.model();
+		_models = Collections.unmodifiableList(new ArrayList<URL>(configuration.models()));
+		_referenceModel = configuration.referenceModel();
+		_force = ResolvedConfiguration.booleanValue(configuration.force());
+		_watch = ResolvedConfiguration.booleanValue(configuration.watch());
+		_threads = configuration.threads().intValue();
+	}
+
+	/**
+	 * @return model url
+	 */
+	public URL model() {
+		return _model;
+	}
+
+	/**
+	 * @return urls of all the models to generate, the returned list is immutable
+	 */
+	public List<URL> models() {
+		return _models;
+	}
+
+	/**
+	 * @return reference model url
+	 */
+	public URL referenceModel() {
+		return _referenceModel;
+	}
+
+	/**
+	 * @return true if read-only files are overwritten
+	 */
+	public boolean force() {
+		return _force;
+	}
+
+	/**
+	 * @return true if the generator keeps running to regenerate the changed entities
+	 */
+	public boolean watch() {
+		return _watch;
+	}
+
+	/**
+	 * @return number of worker threads
+	 */
+	public int threads() {
+		return _threads;
+	}
+
+}
@@ -31,6 +31,12 @@ import com.webobjects.generator.Generator;
  * Loads the EOModel found at modelpath, and generates classes for all entities found inside (unless specific entities are given on the command line).
  * -refmodel modelpath
  * Loads the EOModel found at modelpath, but does not generate classes for its entities (unless specific entities are given on the command line, in which case this is the same as -model).  This is useful if you only want to generate entities for one model, but need to load other models to resolve all of the relationships in the main model.
+ * -models modelpath:modelpath...
+ * Loads all the EOModels of the list, separated by the path separator, and generates classes for their entities in a single run.  An URL such as file:/path/Model.eomodeld is kept whole.  The models share one model group, so relationships between them are resolved without -refmodel.  The entities of all the models are generated by the same -threads workers, and the number of entities generated and failed is printed for each model.
+ * -modelList file
+ * Same as -models with the models read from file, one model path per line.  Relative paths are relative to the directory of file, and lines starting with # are ignored.
+ * -watch
+ * Keeps running after the generation, watching the model directories and the templates.  When an entity or fetch specification file changes, the models are reloaded and the entity, its sub entities and the entities with a relationship to it are generated again.  When a template or the -refmodel model changes, all the entities are generated again.
  * -force
  * Force overwriting of read-only files.  By default, read-only files will not be overwritten, and a warning message printed instead.  This can be a useful reminder in some revision control environments to check out the necessary files first.
  * -destination destinationdirectory
@@ -53,14 +59,32 @@ import com.webobjects.generator.Generator;
  * -filenameTemplate string
  * This argument causes string to be used as a MiscMerge template, with the result being used as the base name for the generated files.  Normally, filenames based on the entity's class name are used, which is sufficient for most situations.  Occasionally it can be useful to have custom filename patterns (coupled with custom templates), and this parameter can allow for a lot of flexibility.  For example, if you want Java interfaces to be generated along with the classes, a template of &quot;{javaClassName}Interface&quot; will cause 'Interface' to be appended to each filename. The delimiters for this template are `{' and `}', and the base object is the EOEntity instance (just like the regular class templates).  Regular EOEntity methods can be used as keys, as can entries in the userInfo dictionary.  When generating Java classes, if the generated filename has what looks like a Java package, it will override the package normally specified in the EOModel.
  * The boolean variables &quot;isSubclass&quot; and &quot;isSuperclass&quot; are defined for use in if statements as necessary.  For example, to generate the abstract superclasses into a separate &quot;eogen&quot; subpackage, something like the following can be used (coupled with changes to the templates of course): -filenameTemplate '{classPackageName}{if isSuperclass}.eogen{endif}.{classNameWithoutPackage}'
+ * -templateEngine component|compiled
+ * Selects how the templates are rendered.  "component", the default, renders all the templates as WOComponent templates.  "compiled" compiles the templates using WOString, WOConditional and WORepetition with inline bindings, and renders them without the WebObjects template parser; the other templates are rendered as WOComponent templates.
+ * -dryrun
+ * Renders all the files and compares them with the existing files, but writes nothing.  The files that would be created or changed are listed with their size difference in bytes, and eogenerator exits with the status 1 if there are any, so a build can check that the generated sources are current.  Whether or not -dryrun is set, eogenerator exits with the status 3 if some entities could not be generated.
+ * -dryrunReport file
+ * Writes the -dryrun report to file, one line per generated file with the status (created, changed or unchanged), the size difference in bytes and the path separated by tabs.  The report is written as JSON if file ends with .json.
  * -encoding enc
  * Specifies the character encoding to be used for generated files.  The name can be specified as a value returned from the NSString +localizedNameOfStringEncoding: method, or (on MacOS X) an IANA name (typically what Java uses).  Defaults to the local platform string encoding.
  * -templateEncoding enc
  * Specifies the character encoding to be used when reading template files. Defaults to the value specified for -encoding.
  * -define-key value
  * This option adds the specified key-value pair to the list of variables available to the template, in addition to the EOEntity methods.  A key specified in this manner will not come before an EOEntity method of the same name when the template searches for the value.
+ * -shard index/count
+ * Generates only the shard index of count, from 1/count to count/count, so count eogenerator processes with the same options generate all the entities between them.  The entities are partitioned by the hash of their name, weighted by their number of attributes and relationships, the same way by every process.  Each shard writes its manifest and its -statsJson and -profile files with the suffix .shard-index-of-count.
+ * -mergeShards count
+ * Generates nothing, and merges the manifests and the -statsJson reports written by the count shards of a -shard run with the same options.  The merged manifest is used by the next -incremental run, and the merged statistics are printed and written to the -statsJson file.  eogenerator exits with the status 2 if a shard is missing.
  * -verbose
  * Causes more verbose debugging output to be logged to standard output.
+ * -stats
+ * Prints the time spent in each phase of the generation, the number of files written and skipped, and the slowest objects.
+ * -statsTop count
+ * Number of slowest objects listed by -stats and -mergeShards, and of slowest template frames listed by -profile.  Defaults to 10.
+ * -statsJson file
+ * Writes the -stats report as JSON to file, with the times in nanoseconds.
+ * -profile file
+ * Profiles the rendering of the templates and writes the profile to file in the collapsed stack format read by the flame graph tools, with the self time of each stack in nanoseconds.  The time spent in each template, each WOString, WOConditional and WORepetition element and each binding key path is recorded with the frames it is nested in, so a repetition nested in another shows as its own stack, and the frames with the most time are printed with their invocation count.  The elements are only profiled by the compiled template engine, the component engine profiles the binding key paths.
  * -version
  * Displays the version number for eogenerator.
  * -help
@@ -101,6 +125,12 @@ public class EOGeneratorApplication extends WOApplication implements Generator.C
 			aGenerator.showHelp();
 		}
 		aGenerator.run();
+		if (aGenerator.watches()) {
+			// Keeps the application, the models and the parsed templates for the next generations
+			aGenerator.watch();
+		} else if (aGenerator.exitStatus() != 0) {
+			System.exit(aGenerator.exitStatus());
+		}
 	}
 
 	/*
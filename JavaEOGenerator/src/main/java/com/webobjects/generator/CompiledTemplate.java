@@ -0,0 +1,697 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.lang.reflect.Array;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Template compiled into a tree of nodes. The compiled templates support the elements used by the generator templates, with inline bindings:
+ * <ul>
+ * <li>&lt;wo:WOString&gt; with the value, valueWhenEmpty and escapeHTML bindings</li>
+ * <li>&lt;wo:WOConditional&gt; with the condition and negate bindings</li>
+ * <li>&lt;wo:WORepetition&gt; with the list, item, index and count bindings</li>
+ * </ul>
+ * A binding value between brackets, like "[entity.name]", is a key path from the component, any other value is a constant. The rest of the template is static
+ * text. The elements render as the WebObjects dynamic elements of the same name, the text between the elements is copied as it is.
+ *
+ * @since 5.4
+ */
+public class CompiledTemplate {
+
+	private static final String	ElementPrefix	= "wo:";
+
+	private ContainerNode		_root;
+
+	/**
+	 * @param root
+	 *            node holding the top level nodes of the template
+	 */
+	protected CompiledTemplate(ContainerNode root) {
+		super();
+		_root = root;
+	}
+
+	/**
+	 * Renders the template with the component as the root object of the key paths
+	 *
+	 * @param component
+	 * @return rendered content
+	 */
+	public String render(GeneratorComponent<?> component) {
+		GeneratedContent content = new GeneratedContent();
+		_root.appendToContent(content, component);
+		return content.renderedContent();
+	}
+
+	/**
+	 * Renders the template in the content with the component as the root object of the key paths
+	 *
+	 * @param component
+	 * @param content
+	 */
+	public void render(GeneratorComponent<?> component, GeneratedContent content) {
+		_root.appendToContent(content, component);
+	}
+
+	/**
+	 * Returns true if rendering the template does not set any value in the component, that is the template has no WORepetition. The same component can render
+	 * such a template for several target objects.
+	 *
+	 * @return true if the template only reads values from the component
+	 */
+	public boolean isReadOnly() {
+		return _root.isReadOnly();
+	}
+
+	/**
+	 * Compiles the template string
+	 *
+	 * @param templateString
+	 * @return compiled template
+	 * @throws ParseException
+	 *             if the template uses an element or a binding that cannot be compiled, or is not well formed
+	 */
+	public static CompiledTemplate compile(String templateString) throws ParseException {
+		List<ElementNode> openElements = new ArrayList<ElementNode>();
+		ContainerNode root = new ContainerNode();
+		ContainerNode current = root;
+		int length = templateString.length();
+		int index = 0;
+		while (index < length) {
+			int tagStart = CompiledTemplate.indexOfTag(templateString, index);
+			int textEnd = (tagStart != -1 ? tagStart : length);
+			if (textEnd > index) {
+				current.addNode(new TextNode(templateString.substring(index, textEnd)));
+			}
+			if (tagStart == -1) {
+				break;
+			}
+			int tagEnd = templateString.indexOf('>', tagStart);
+			if (tagEnd == -1) {
+				throw new ParseException("Unterminated tag", tagStart);
+			}
+			if (templateString.charAt(tagStart + 1) == '/') {
+				// Closing tag
+				String name = templateString.substring(tagStart + 2 + ElementPrefix.length(), tagEnd).trim();
+				ElementNode anElement = (openElements.size() > 0 ? openElements.remove(openElements.size() - 1) : null);
+				if ((anElement == null) || !anElement.name().equals(name)) {
+					throw new ParseException("Unexpected closing tag: '" + name + "'", tagStart);
+				}
+				anElement.validate(tagStart);
+				current = (openElements.size() > 0 ? openElements.get(openElements.size() - 1) : root);
+				index = tagEnd + 1;
+			} else {
+				index = tagStart + 1 + ElementPrefix.length();
+				int nameEnd = index;
+				while ((nameEnd < length) && Character.isJavaIdentifierPart(templateString.charAt(nameEnd))) {
+					nameEnd++;
+				}
+				String name = templateString.substring(index, nameEnd);
+				Map<String, Binding> bindings = new TreeMap<String, Binding>();
+				index = CompiledTemplate.parseBindings(templateString, nameEnd, bindings);
+				boolean empty = templateString.startsWith("/>", index);
+				ElementNode anElement = CompiledTemplate.elementNamed(name, bindings, tagStart);
+				current.addNode(anElement);
+				if (empty) {
+					anElement.validate(tagStart);
+					index += 2;
+				} else {
+					openElements.add(anElement);
+					current = anElement;
+					index += 1;
+				}
+			}
+		}
+		if (openElements.size() > 0) {
+			throw new ParseException("Unclosed element: '" + openElements.get(openElements.size() - 1).name() + "'", length);
+		}
+		return new CompiledTemplate(root);
+	}
+
+	/**
+	 * Returns the index of the next element tag, or -1. WebObjects declarations are not supported.
+	 */
+	private static int indexOfTag(String templateString, int fromIndex) throws ParseException {
+		int index = templateString.indexOf('<', fromIndex);
+		while (index != -1) {
+			int nameStart = index + 1;
+			if ((nameStart < templateString.length()) && (templateString.charAt(nameStart) == '/')) {
+				nameStart++;
+			}
+			if (templateString.regionMatches(true, nameStart, ElementPrefix, 0, ElementPrefix.length())) {
+				if (!templateString.startsWith(ElementPrefix, nameStart)) {
+					throw new ParseException("Unsupported element prefix", index);
+				}
+				return index;
+			}
+			if (templateString.regionMatches(true, nameStart, "webobject", 0, 9)) {
+				throw new ParseException("Unsupported webobject tag", index);
+			}
+			index = templateString.indexOf('<', index + 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * Parses the name="value" pairs of an element tag, and returns the index of the "/&gt;" or "&gt;" ending the tag.
+	 */
+	private static int parseBindings(String templateString, int fromIndex, Map<String, Binding> bindings) throws ParseException {
+		int length = templateString.length();
+		int index = fromIndex;
+		while (true) {
+			while ((index < length) && Character.isWhitespace(templateString.charAt(index))) {
+				index++;
+			}
+			if ((index >= length) || (templateString.charAt(index) == '>') || templateString.startsWith("/>", index)) {
+				break;
+			}
+			int nameEnd = index;
+			while ((nameEnd < length) && Character.isJavaIdentifierPart(templateString.charAt(nameEnd))) {
+				nameEnd++;
+			}
+			String name = templateString.substring(index, nameEnd);
+			index = nameEnd;
+			while ((index < length) && Character.isWhitespace(templateString.charAt(index))) {
+				index++;
+			}
+			if ((name.length() == 0) || (index >= length) || (templateString.charAt(index) != '=')) {
+				throw new ParseException("Binding without value", index);
+			}
+			index++;
+			while ((index < length) && Character.isWhitespace(templateString.charAt(index))) {
+				index++;
+			}
+			char quote = (index < length ? templateString.charAt(index) : ' ');
+			int valueEnd = ((quote == '"') || (quote == '\'') ? templateString.indexOf(quote, index + 1) : -1);
+			if (valueEnd == -1) {
+				throw new ParseException("Unquoted binding value: '" + name + "'", index);
+			}
+			if (bindings.put(name, CompiledTemplate.bindingForValue(templateString.substring(index + 1, valueEnd), index)) != null) {
+				throw new ParseException("Duplicate binding: '" + name + "'", index);
+			}
+			index = valueEnd + 1;
+		}
+		if (index >= length) {
+			throw new ParseException("Unterminated tag", fromIndex);
+		}
+		return index;
+	}
+
+	private static Binding bindingForValue(String value, int offset) throws ParseException {
+		if (value.startsWith("[") && value.endsWith("]")) {
+			String keyPath = value.substring(1, value.length() - 1).trim();
+			if (keyPath.length() == 0) {
+				throw new ParseException("Empty key path", offset);
+			}
+			return new KeyPathBinding(keyPath);
+		}
+		if (value.startsWith("$") || value.startsWith("~")) {
+			throw new ParseException("Unsupported binding: '" + value + "'", offset);
+		}
+		return new ConstantBinding(value);
+	}
+
+	private static ElementNode elementNamed(String name, Map<String, Binding> bindings, int offset) throws ParseException {
+		ElementNode anElement;
+		if ("WOString".equals(name)) {
+			anElement = new StringNode(bindings, offset);
+		} else if ("WOConditional".equals(name)) {
+			anElement = new ConditionalNode(bindings, offset);
+		} else if ("WORepetition".equals(name)) {
+			anElement = new RepetitionNode(bindings, offset);
+		} else {
+			throw new ParseException("Unsupported element: '" + name + "'", offset);
+		}
+		if (bindings.size() > 0) {
+			throw new ParseException("Unsupported bindings for " + name + ": " + bindings.keySet(), offset);
+		}
+		return anElement;
+	}
+
+	/**
+	 * Returns the boolean value of a binding value, as the WebObjects dynamic elements do: null, false, zero and the strings "false", "no", "nil", "null" and "0"
+	 * are false.
+	 *
+	 * @param value
+	 * @return boolean value
+	 */
+	public static boolean booleanValue(Object value) {
+		if (value == null) {
+			return false;
+		} else if (value instanceof Boolean) {
+			return ((Boolean) value).booleanValue();
+		} else if (value instanceof Number) {
+			return ((Number) value).doubleValue() != 0;
+		} else if (value instanceof String) {
+			String aString = ((String) value).trim();
+			if ((aString.length() == 0) || aString.equalsIgnoreCase("false") || aString.equalsIgnoreCase("no") || aString.equalsIgnoreCase("nil")
+					|| aString.equalsIgnoreCase("null")) {
+				return false;
+			}
+			try {
+				return Integer.parseInt(aString) != 0;
+			} catch (NumberFormatException exception) {
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " nodes: " + _root.nodes().size() + " >";
+	}
+
+	/**
+	 * Value of an element binding
+	 */
+	public static abstract class Binding {
+
+		/**
+		 * @param component
+		 * @return value of the binding in the component
+		 */
+		public abstract Object valueInComponent(GeneratorComponent<?> component);
+
+		/**
+		 * Sets the value of the binding in the component
+		 *
+		 * @param value
+		 * @param component
+		 */
+		public abstract void setValueInComponent(Object value, GeneratorComponent<?> component);
+
+		/**
+		 * @return true if the value can be set
+		 */
+		public abstract boolean isValueSettable();
+
+		/**
+		 * @return binding as written in the template
+		 */
+		public abstract String expression();
+	}
+
+	/**
+	 * Binding to a constant value
+	 */
+	public static class ConstantBinding extends Binding {
+		private Object	_value;
+
+		/**
+		 * @param value
+		 */
+		public ConstantBinding(Object value) {
+			super();
+			_value = value;
+		}
+
+		@Override
+		public Object valueInComponent(GeneratorComponent<?> component) {
+			return _value;
+		}
+
+		@Override
+		public void setValueInComponent(Object value, GeneratorComponent<?> component) {
+			throw new IllegalStateException("Cannot set the value of the constant '" + _value + "'");
+		}
+
+		@Override
+		public boolean isValueSettable() {
+			return false;
+		}
+
+		@Override
+		public String expression() {
+			return (_value instanceof String ? "\"" + _value + "\"" : String.valueOf(_value));
+		}
+	}
+
+	/**
+	 * Binding to a key path from the component
+	 */
+	public static class KeyPathBinding extends Binding {
+		private String	_keyPath;
+
+		/**
+		 * @param keyPath
+		 */
+		public KeyPathBinding(String keyPath) {
+			super();
+			_keyPath = keyPath;
+		}
+
+		@Override
+		public Object valueInComponent(GeneratorComponent<?> component) {
+			return component.valueForKeyPath(_keyPath);
+		}
+
+		@Override
+		public void setValueInComponent(Object value, GeneratorComponent<?> component) {
+			component.takeValueForKeyPath(value, _keyPath);
+		}
+
+		@Override
+		public boolean isValueSettable() {
+			return true;
+		}
+
+		@Override
+		public String expression() {
+			return _keyPath;
+		}
+	}
+
+	/**
+	 * Node of a compiled template
+	 */
+	public static abstract class Node {
+
+		/**
+		 * Appends the rendering of the node to the content
+		 *
+		 * @param content
+		 * @param component
+		 */
+		public abstract void appendToContent(GeneratedContent content, GeneratorComponent<?> component);
+
+		/**
+		 * @return true if the node and its children do not set any value in the component
+		 */
+		public boolean isReadOnly() {
+			return true;
+		}
+	}
+
+	/**
+	 * Static text
+	 */
+	public static class TextNode extends Node {
+		private String	_text;
+
+		/**
+		 * @param text
+		 */
+		public TextNode(String text) {
+			super();
+			_text = text;
+		}
+
+		@Override
+		public void appendToContent(GeneratedContent content, GeneratorComponent<?> component) {
+			content.append(_text);
+		}
+	}
+
+	/**
+	 * Node holding child nodes
+	 */
+	public static class ContainerNode extends Node {
+		private List<Node>	_nodes	= new ArrayList<Node>();
+
+		/**
+		 * @return child nodes
+		 */
+		public List<Node> nodes() {
+			return _nodes;
+		}
+
+		/**
+		 * @param aNode
+		 */
+		public void addNode(Node aNode) {
+			_nodes.add(aNode);
+		}
+
+		@Override
+		public void appendToContent(GeneratedContent content, GeneratorComponent<?> component) {
+			GeneratorProfiler profiler = component.profiler();
+			for (int index = 0; index < _nodes.size(); index++) {
+				Node aNode = _nodes.get(index);
+				if ((profiler != null) && (aNode instanceof ElementNode)) {
+					profiler.begin(((ElementNode) aNode).profileName());
+					try {
+						aNode.appendToContent(content, component);
+					} finally {
+						profiler.end();
+					}
+				} else {
+					aNode.appendToContent(content, component);
+				}
+			}
+		}
+
+		@Override
+		public boolean isReadOnly() {
+			for (Node aNode : _nodes) {
+				if (!aNode.isReadOnly()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Element of a compiled template. Each element takes the bindings it supports from the bindings of its tag, the remaining bindings are not supported.
+	 */
+	public static abstract class ElementNode extends ContainerNode {
+
+		/**
+		 * @return element name
+		 */
+		public abstract String name();
+
+		/**
+		 * @return name of the element in the template profiles, with its main binding
+		 */
+		public String profileName() {
+			return this.name();
+		}
+
+		/**
+		 * Checks the element once its content is compiled
+		 *
+		 * @param offset
+		 * @throws ParseException
+		 */
+		public void validate(int offset) throws ParseException {
+			// Nothing to check
+		}
+	}
+
+	/**
+	 * WOString element
+	 */
+	public static class StringNode extends ElementNode {
+		private Binding	_value;
+
+		private Binding	_valueWhenEmpty;
+
+		private Binding	_escapeHTML;
+
+		/**
+		 * @param bindings
+		 * @param offset
+		 * @throws ParseException
+		 */
+		public StringNode(Map<String, Binding> bindings, int offset) throws ParseException {
+			super();
+			_value = bindings.remove("value");
+			_valueWhenEmpty = bindings.remove("valueWhenEmpty");
+			_escapeHTML = bindings.remove("escapeHTML");
+			if (_value == null) {
+				throw new ParseException("WOString without value", offset);
+			}
+		}
+
+		@Override
+		public String name() {
+			return "WOString";
+		}
+
+		@Override
+		public String profileName() {
+			return "WOString value=" + _value.expression();
+		}
+
+		@Override
+		public void validate(int offset) throws ParseException {
+			if (this.nodes().size() > 0) {
+				throw new ParseException("WOString with content", offset);
+			}
+		}
+
+		@Override
+		public void appendToContent(GeneratedContent content, GeneratorComponent<?> component) {
+			Object value = _value.valueInComponent(component);
+			String aString = (value != null ? value.toString() : null);
+			if (((aString == null) || (aString.length() == 0)) && (_valueWhenEmpty != null)) {
+				value = _valueWhenEmpty.valueInComponent(component);
+				aString = (value != null ? value.toString() : null);
+			}
+			if (aString != null) {
+				if ((_escapeHTML == null) || CompiledTemplate.booleanValue(_escapeHTML.valueInComponent(component))) {
+					content.appendEscapedXMLEntities(aString);
+				} else {
+					content.append(aString);
+				}
+			}
+		}
+	}
+
+	/**
+	 * WOConditional element
+	 */
+	public static class ConditionalNode extends ElementNode {
+		private Binding	_condition;
+
+		private Binding	_negate;
+
+		/**
+		 * @param bindings
+		 * @param offset
+		 * @throws ParseException
+		 */
+		public ConditionalNode(Map<String, Binding> bindings, int offset) throws ParseException {
+			super();
+			_condition = bindings.remove("condition");
+			_negate = bindings.remove("negate");
+			if (_condition == null) {
+				throw new ParseException("WOConditional without condition", offset);
+			}
+		}
+
+		@Override
+		public String name() {
+			return "WOConditional";
+		}
+
+		@Override
+		public String profileName() {
+			return "WOConditional condition=" + _condition.expression() + (_negate != null ? " negate=" + _negate.expression() : "");
+		}
+
+		@Override
+		public void appendToContent(GeneratedContent content, GeneratorComponent<?> component) {
+			boolean condition = CompiledTemplate.booleanValue(_condition.valueInComponent(component));
+			if ((_negate != null) && CompiledTemplate.booleanValue(_negate.valueInComponent(component))) {
+				condition = !condition;
+			}
+			if (condition) {
+				super.appendToContent(content, component);
+			}
+		}
+	}
+
+	/**
+	 * WORepetition element
+	 */
+	public static class RepetitionNode extends ElementNode {
+		private Binding	_list;
+
+		private Binding	_item;
+
+		private Binding	_index;
+
+		private Binding	_count;
+
+		/**
+		 * @param bindings
+		 * @param offset
+		 * @throws ParseException
+		 */
+		public RepetitionNode(Map<String, Binding> bindings, int offset) throws ParseException {
+			super();
+			_list = bindings.remove("list");
+			_item = bindings.remove("item");
+			_index = bindings.remove("index");
+			_count = bindings.remove("count");
+			if ((_list == null) == (_count == null)) {
+				throw new ParseException("WORepetition needs either a list or a count", offset);
+			}
+			if (((_item != null) && !_item.isValueSettable()) || ((_index != null) && !_index.isValueSettable())) {
+				throw new ParseException("WORepetition with a constant item or index", offset);
+			}
+		}
+
+		@Override
+		public String name() {
+			return "WORepetition";
+		}
+
+		@Override
+		public String profileName() {
+			return (_list != null ? "WORepetition list=" + _list.expression() : "WORepetition count=" + _count.expression());
+		}
+
+		@Override
+		public boolean isReadOnly() {
+			return false;
+		}
+
+		@Override
+		public void appendToContent(GeneratedContent content, GeneratorComponent<?> component) {
+			if (_list != null) {
+				Object list = _list.valueInComponent(component);
+				if (list instanceof List<?>) {
+					List<?> aList = (List<?>) list;
+					for (int index = 0; index < aList.size(); index++) {
+						this.appendIterationToContent(aList.get(index), index, content, component);
+					}
+				} else if ((list != null) && list.getClass().isArray()) {
+					for (int index = 0; index < Array.getLength(list); index++) {
+						this.appendIterationToContent(Array.get(list, index), index, content, component);
+					}
+				} else if (list instanceof Iterable<?>) {
+					int index = 0;
+					for (Object anItem : (Iterable<?>) list) {
+						this.appendIterationToContent(anItem, index++, content, component);
+					}
+				} else if (list != null) {
+					throw new IllegalArgumentException("WORepetition list is not a list: " + list.getClass().getName());
+				}
+			} else {
+				Object count = _count.valueInComponent(component);
+				int aCount = (count instanceof Number ? ((Number) count).intValue() : (count != null ? Integer.parseInt(count.toString().trim()) : 0));
+				for (int index = 0; index < aCount; index++) {
+					this.appendIterationToContent(null, index, content, component);
+				}
+			}
+			if (_item != null) {
+				_item.setValueInComponent(null, component);
+			}
+		}
+
+		private void appendIterationToContent(Object anItem, int index, GeneratedContent content, GeneratorComponent<?> component) {
+			if (_item != null) {
+				_item.setValueInComponent(anItem, component);
+			}
+			if (_index != null) {
+				_index.setValueInComponent(Integer.valueOf(index), component);
+			}
+			super.appendToContent(content, component);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Template engine compiling the templates into a tree of nodes, see CompiledTemplate. The compiled templates are rendered without the WebObjects template
+ * parser, associations and responses. Templates using elements or bindings the compiled templates do not support are rendered by the fallback engine, so
+ * every template renders as it does with the fallback engine.
+ *
+ * @since 5.4
+ */
+public class CompiledTemplateEngine implements GeneratorTemplateEngine {
+
+	private GeneratorTemplateEngine			_fallbackEngine;
+
+	private Map<String, CompiledTemplate>	_templates;
+
+	private Set<String>						_unsupportedTemplates;
+
+	/**
+	 * @param fallbackEngine
+	 *            engine for the templates that cannot be compiled
+	 */
+	public CompiledTemplateEngine(GeneratorTemplateEngine fallbackEngine) {
+		super();
+		_fallbackEngine = fallbackEngine;
+		_templates = new ConcurrentHashMap<String, CompiledTemplate>();
+		_unsupportedTemplates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	}
+
+	/**
+	 * Returns the engine for the templates that cannot be compiled
+	 *
+	 * @return fallback engine
+	 */
+	public GeneratorTemplateEngine fallbackEngine() {
+		return _fallbackEngine;
+	}
+
+	/**
+	 * Returns the compiled template for the template string, compiling it on the first request.
+	 *
+	 * @param templateString
+	 * @return compiled template or null if the template uses elements or bindings that cannot be compiled
+	 */
+	public CompiledTemplate templateForString(String templateString) {
+		CompiledTemplate template = _templates.get(templateString);
+		if ((template == null) && !_unsupportedTemplates.contains(templateString)) {
+			try {
+				template = CompiledTemplate.compile(templateString);
+				_templates.put(templateString, template);
+			} catch (ParseException exception) {
+				_unsupportedTemplates.add(templateString);
+			}
+		}
+		return template;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#parseTemplate(com.webobjects.generator.GeneratorComponent)
+	 */
+	public void parseTemplate(GeneratorComponent<?> component) {
+		if (this.templateForString(component.templateString()) == null) {
+			_fallbackEngine.parseTemplate(component);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#renderTemplate(com.webobjects.generator.GeneratorComponent)
+	 */
+	public String renderTemplate(GeneratorComponent<?> component) {
+		CompiledTemplate template = this.templateForString(component.templateString());
+		return (template != null ? template.render(component) : _fallbackEngine.renderTemplate(component));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#renderTemplate(com.webobjects.generator.GeneratorComponent,
+	 * com.webobjects.generator.GeneratedContent)
+	 */
+	public void renderTemplate(GeneratorComponent<?> component, GeneratedContent content) {
+		CompiledTemplate template = this.templateForString(component.templateString());
+		if (template != null) {
+			template.render(component, content);
+		} else {
+			_fallbackEngine.renderTemplate(component, content);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#clearTemplates()
+	 */
+	public void clearTemplates() {
+		_templates.clear();
+		_unsupportedTemplates.clear();
+		_fallbackEngine.clearTemplates();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " compiled: " + _templates.size() + " unsupported: " + _unsupportedTemplates.size() + " fallbackEngine: "
+				+ _fallbackEngine + " >";
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+/**
+ * Template engine rendering the templates as WOComponent templates: the template string is parsed by the WebObjects template parser and the component
+ * generates its response. Every WebObjects dynamic element can be used in the templates.
+ *
+ * @since 5.4
+ */
+public class ComponentTemplateEngine implements GeneratorTemplateEngine {
+
+	private GeneratorTemplateCache	_templateCache;
+
+	/**
+	 * @param templateCache
+	 *            cache of parsed templates shared by the components of the generation
+	 */
+	public ComponentTemplateEngine(GeneratorTemplateCache templateCache) {
+		super();
+		_templateCache = templateCache;
+	}
+
+	/**
+	 * Returns the cache of parsed templates
+	 *
+	 * @return template cache
+	 */
+	public GeneratorTemplateCache templateCache() {
+		return _templateCache;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#parseTemplate(com.webobjects.generator.GeneratorComponent)
+	 */
+	public void parseTemplate(GeneratorComponent<?> component) {
+		component.template();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#renderTemplate(com.webobjects.generator.GeneratorComponent)
+	 */
+	public String renderTemplate(GeneratorComponent<?> component) {
+		return component.generateResponse().contentString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#renderTemplate(com.webobjects.generator.GeneratorComponent,
+	 * com.webobjects.generator.GeneratedContent)
+	 */
+	public void renderTemplate(GeneratorComponent<?> component, GeneratedContent content) {
+		// The response content is rendered in memory
+		content.append(this.renderTemplate(component));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.generator.GeneratorTemplateEngine#clearTemplates()
+	 */
+	public void clearTemplates() {
+		_templateCache.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " templateCache: " + _templateCache + " >";
+	}
+
+}
@@ -35,6 +35,8 @@ public class Configuration {
 
 	List<URL>					_searchPath;
 
+	ResolvedConfiguration		_resolvedConfiguration;
+
 	/**
 	 * Option leader key
 	 */
@@ -110,6 +112,66 @@ public class Configuration {
 	 */
 	public static final String	SubClassJavaTemplatesKey	= "subclassJavaTemplate";
 
+	/**
+	 * Option key
+	 */
+	public static final String	IncrementalKey				= "incremental";
+
+	/**
+	 * Option key
+	 */
+	public static final String	StatisticsKey				= "stats";
+
+	/**
+	 * Option key
+	 */
+	public static final String	StatisticsTopKey			= "statsTop";
+
+	/**
+	 * Option key
+	 */
+	public static final String	StatisticsJSONKey			= "statsJson";
+
+	/**
+	 * Option key
+	 */
+	public static final String	ProfileKey					= "profile";
+
+	/**
+	 * Option key
+	 */
+	public static final String	ShardKey					= "shard";
+
+	/**
+	 * Option key
+	 */
+	public static final String	MergeShardsKey				= "mergeShards";
+
+	/**
+	 * Option key
+	 */
+	public static final String	TemplateEngineKey			= "templateEngine";
+
+	/**
+	 * Option key
+	 */
+	public static final String	DryRunKey					= "dryrun";
+
+	/**
+	 * Option key
+	 */
+	public static final String	DryRunReportKey				= "dryrunReport";
+
+	/**
+	 * Template engine compiling the templates, see CompiledTemplateEngine
+	 */
+	public static final String	CompiledTemplateEngineName	= "compiled";
+
+	/**
+	 * Template engine rendering the templates as WOComponent templates, see ComponentTemplateEngine
+	 */
+	public static final String	ComponentTemplateEngineName	= "component";
+
 	/**
 	 *
 	 */
@@ -329,6 +391,152 @@ public class Configuration {
 
 	}
 
+	/**
+	 *
+	 */
+	public static class IntegerOption extends Option {
+
+		Integer	_value;
+
+		Integer	_defaultValue;
+
+		/**
+		 * @param name
+		 * @param description
+		 */
+		public IntegerOption(String name, String description) {
+			this(name, description, Integer.valueOf(0));
+		}
+
+		/**
+		 * @param name
+		 * @param description
+		 * @param defaultValue
+		 */
+		public IntegerOption(String name, String description, Integer defaultValue) {
+			super(name, description);
+			_defaultValue = defaultValue;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.webobjects.generator.Configuration.Option#decodeOptions(java.util.Queue)
+		 */
+		@Override
+		public void decodeOptions(Queue<String> optionList) throws InvalidOptionException {
+			if (this.isSameOptionName(optionList)) {
+				String aValue = Option.optionValueFromList(optionList);
+				if (aValue.length() > 0) {
+					try {
+						_value = Integer.valueOf(aValue);
+					} catch (NumberFormatException exception) {
+						throw new InvalidOptionException(exception);
+					}
+				} else {
+					_value = this.defaultValue();
+				}
+			}
+		}
+
+		/**
+		 * @return value
+		 */
+		public Integer value() {
+			return (_value != null ? _value : this.defaultValue());
+		}
+
+		/**
+		 * Default value of the option
+		 *
+		 * @return 0
+		 */
+		public Integer defaultValue() {
+			return (_defaultValue != null ? _defaultValue : Integer.valueOf(0));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.webobjects.generator.Configuration.Option#toString()
+		 */
+		@Override
+		public String toString() {
+			return super.toString() + " default: '" + this.defaultValue() + "' value: '" + this.value() + "'";
+		}
+
+	}
+
+	/**
+	 * Option selecting a shard of the generation, written index/count with the index from 1 to count
+	 */
+	public static class ShardOption extends Option {
+
+		Integer	_index;
+
+		Integer	_count;
+
+		/**
+		 * @param name
+		 * @param description
+		 */
+		public ShardOption(String name, String description) {
+			super(name, description);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.webobjects.generator.Configuration.Option#decodeOptions(java.util.Queue)
+		 */
+		@Override
+		public void decodeOptions(Queue<String> optionList) throws InvalidOptionException {
+			if (this.isSameOptionName(optionList)) {
+				String aValue = Option.optionValueFromList(optionList);
+				int separator = aValue.indexOf('/');
+				if (separator < 0) {
+					throw new InvalidOptionException("Shard '" + aValue + "' is not written index/count");
+				}
+				try {
+					Integer index = Integer.valueOf(aValue.substring(0, separator).trim());
+					Integer count = Integer.valueOf(aValue.substring(separator + 1).trim());
+					if ((count.intValue() < 1) || (index.intValue() < 1) || (index.intValue() > count.intValue())) {
+						throw new InvalidOptionException("Shard '" + aValue + "' is not between 1/" + count + " and " + count + "/" + count);
+					}
+					_index = index;
+					_count = count;
+				} catch (NumberFormatException exception) {
+					throw new InvalidOptionException(exception);
+				}
+			}
+		}
+
+		/**
+		 * @return index of the shard from 1 to count, or null if the option was not set
+		 */
+		public Integer index() {
+			return _index;
+		}
+
+		/**
+		 * @return number of shards, or null if the option was not set
+		 */
+		public Integer count() {
+			return _count;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.webobjects.generator.Configuration.Option#toString()
+		 */
+		@Override
+		public String toString() {
+			return super.toString() + " value: '" + _index + "/" + _count + "'";
+		}
+
+	}
+
 	/**
 	 *
 	 */
@@ -601,6 +809,47 @@ public class Configuration {
 						SubClassJavaTemplatesKey,
 						"Used to specify alternate template files to use.  File can be an absolute path, a relative path, or a filename found in one of the search path directories.  If not specified, the default templates are used.",
 						"JavaSubClassSourceEOF.eotemplate"));
+		this
+				.addOptionToList(new BooleanOption(
+						IncrementalKey,
+						"Keeps a manifest of the generated files in the -destination directory, with a fingerprint of the definition, templates and options used for each object.  Objects whose fingerprint did not change since the previous run are not generated again.",
+						Boolean.FALSE));
+		this
+				.addOptionToList(new BooleanOption(
+						StatisticsKey,
+						"Prints the time spent in each phase of the generation (model load, proxy construction, template parse, render, unescape, compare and write), the number of files written and skipped, and the slowest objects.",
+						Boolean.FALSE));
+		this.addOptionToList(new IntegerOption(StatisticsTopKey, "Number of slowest objects listed by -stats and -mergeShards, and of slowest template frames listed by -profile.  By default the 10 slowest are listed.", Integer.valueOf(10)));
+		this.addOptionToList(new StringOption(StatisticsJSONKey, "Writes the -stats report as JSON to the file, with the times in nanoseconds.", ""));
+		this
+				.addOptionToList(new StringOption(
+						ProfileKey,
+						"Profiles the rendering of the templates and writes the profile to the file in the collapsed stack format read by the flame graph tools.  The time spent in each template, each WOString, WOConditional and WORepetition element and each binding key path is recorded with the frames it is nested in, and the frames with the most time are printed with their invocation count.  The elements are only profiled by the compiled template engine, the component engine profiles the binding key paths.",
+						""));
+		this
+				.addOptionToList(new ShardOption(
+						ShardKey,
+						"Generates only the shard index of count, from 1/count to count/count, so count processes with the same options generate all the objects between them.  The objects are partitioned the same way by every process.  Each shard writes its manifest and its -statsJson and -profile files with the suffix .shard-index-of-count, to be merged by -mergeShards once all the shards are generated."));
+		this
+				.addOptionToList(new IntegerOption(
+						MergeShardsKey,
+						"Generates nothing, and merges the manifests and the -statsJson reports written by the count shards of a -shard generation run with the same options.  The merged manifest is written for the next -incremental run, and the merged statistics are printed and written to the -statsJson file.",
+						Integer.valueOf(0)));
+		this
+				.addOptionToList(new StringOption(
+						TemplateEngineKey,
+						"Selects how the templates are rendered.  \"component\", the default, renders all the templates as WOComponent templates.  \"compiled\" compiles the templates using WOString, WOConditional and WORepetition with inline bindings, and renders them without the WebObjects template parser; the other templates are rendered as WOComponent templates.",
+						ComponentTemplateEngineName));
+		this
+				.addOptionToList(new BooleanOption(
+						DryRunKey,
+						"Renders all the files and compares them with the existing files, but writes nothing.  The files that would be created or changed are listed with their size difference in bytes, and the generator exits with the status 1 if there are any, so a build can check that the generated sources are current.  Whether or not -dryrun is set, the generator exits with the status 3 if some objects could not be generated.",
+						Boolean.FALSE));
+		this
+				.addOptionToList(new StringOption(
+						DryRunReportKey,
+						"Writes the -dryrun report to the file, one line per generated file with the status (created, changed or unchanged), the size difference in bytes and the path separated by tabs.  The report is written as JSON if the file name ends with .json.",
+						""));
 	}
 
 	/**
@@ -800,6 +1049,116 @@ public class Configuration {
 		return (anOption instanceof StringOption ? ((StringOption) anOption).value() : "_");
 	}
 
+	/**
+	 * Returns true if the incremental option was set.
+	 *
+	 * @return true if the generation is incremental
+	 */
+	public Boolean incremental() {
+		Option anOption = this.optionForName(IncrementalKey);
+		return (anOption instanceof BooleanOption ? ((BooleanOption) anOption).value() : Boolean.FALSE);
+	}
+
+	/**
+	 * Returns true if the stats option was set.
+	 *
+	 * @return true if the generation statistics are printed
+	 */
+	public Boolean statistics() {
+		Option anOption = this.optionForName(StatisticsKey);
+		return (anOption instanceof BooleanOption ? ((BooleanOption) anOption).value() : Boolean.FALSE);
+	}
+
+	/**
+	 * Return the value of the statsTop option
+	 *
+	 * @return number of slowest objects listed
+	 */
+	public Integer statisticsTop() {
+		Option anOption = this.optionForName(StatisticsTopKey);
+		return (anOption instanceof IntegerOption ? ((IntegerOption) anOption).value() : Integer.valueOf(10));
+	}
+
+	/**
+	 * Return the value of the statsJson option
+	 *
+	 * @return path of the JSON statistics file or an empty string
+	 */
+	public String statisticsJSON() {
+		Option anOption = this.optionForName(StatisticsJSONKey);
+		return (anOption instanceof StringOption ? ((StringOption) anOption).value() : "");
+	}
+
+	/**
+	 * Return the value of the profile option
+	 *
+	 * @return path of the template profile file or an empty string
+	 */
+	public String profile() {
+		Option anOption = this.optionForName(ProfileKey);
+		return (anOption instanceof StringOption ? ((StringOption) anOption).value() : "");
+	}
+
+	/**
+	 * Return the shard index of the shard option
+	 *
+	 * @return index of the generated shard from 1 to shardCount(), or null if the generation is not sharded
+	 */
+	public Integer shardIndex() {
+		Option anOption = this.optionForName(ShardKey);
+		return (anOption instanceof ShardOption ? ((ShardOption) anOption).index() : null);
+	}
+
+	/**
+	 * Return the shard count of the shard option
+	 *
+	 * @return number of shards, or null if the generation is not sharded
+	 */
+	public Integer shardCount() {
+		Option anOption = this.optionForName(ShardKey);
+		return (anOption instanceof ShardOption ? ((ShardOption) anOption).count() : null);
+	}
+
+	/**
+	 * Return the value of the mergeShards option
+	 *
+	 * @return number of shards to merge, or 0
+	 */
+	public Integer mergeShards() {
+		Option anOption = this.optionForName(MergeShardsKey);
+		return (anOption instanceof IntegerOption ? ((IntegerOption) anOption).value() : Integer.valueOf(0));
+	}
+
+	/**
+	 * Returns true if the dryrun option was set.
+	 *
+	 * @return true if the generated files are compared but not written
+	 */
+	public Boolean dryRun() {
+		Option anOption = this.optionForName(DryRunKey);
+		return (anOption instanceof BooleanOption ? ((BooleanOption) anOption).value() : Boolean.FALSE);
+	}
+
+	/**
+	 * Return the value of the dryrunReport option
+	 *
+	 * @return path of the dry run report file or an empty string
+	 */
+	public String dryRunReport() {
+		Option anOption = this.optionForName(DryRunReportKey);
+		return (anOption instanceof StringOption ? ((StringOption) anOption).value() : "");
+	}
+
+	/**
+	 * Return the value of the templateEngine option
+	 *
+	 * @return template engine name
+	 */
+	public String templateEngine() {
+		Option anOption = this.optionForName(TemplateEngineKey);
+		return (anOption instanceof StringOption ? ((StringOption) anOption).value() : ComponentTemplateEngineName);
+	}
+
 	/**
 	 * Return the value of the template directoryoption
 	 *
@@ -887,6 +1246,28 @@ public class Configuration {
 		return templateURL;
 	}
 
+	/**
+	 * Returns the option values resolved once in typed fields. The options are not decoded after the construction: the generators read the snapshot
+	 * rather than looking the options up by name.
+	 *
+	 * @return resolved configuration
+	 */
+	public synchronized ResolvedConfiguration resolvedConfiguration() {
+		if (_resolvedConfiguration == null) {
+			_resolvedConfiguration = this.createResolvedConfiguration();
+		}
+		return _resolvedConfiguration;
+	}
+
+	/**
+	 * Creates the resolved configuration. Subclasses adding options return a subclass of ResolvedConfiguration.
+	 *
+	 * @return resolved configuration
+	 */
+	protected ResolvedConfiguration createResolvedConfiguration() {
+		return new ResolvedConfiguration(this);
+	}
+
 	/**
 	 * Build the list of options for the help display
 	 *
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+/**
+ * Content rendered by a template engine. The content is kept in memory until it reaches the streaming threshold, then it is streamed to a file output in
+ * chunks: each chunk is unescaped and trimmed like the content kept in memory, so the memory used by a large generated file does not depend on its size.
+ * <p>
+ * The XML entities and the trailing white spaces are kept in the buffer until the content that follows them is rendered, so the streamed content is identical
+ * to the unescaped and trimmed content kept in memory.
+ * </p>
+ */
+public class GeneratedContent {
+
+	/**
+	 * Number of rendered characters kept in memory before the content is streamed to the output
+	 */
+	public static final int		DefaultStreamingThreshold	= 256 * 1024;
+
+	/**
+	 * Number of characters streamed at once
+	 */
+	public static final int		ChunkSize					= 8192;
+
+	// Length of the longest entity unescaped: &amp;quot;
+	private static final int	LongestEntityLength			= 10;
+
+	private StringBuilder		_buffer;
+
+	private GeneratedFileOutput	_output;
+
+	private int					_threshold;
+
+	private boolean				_streamed;
+
+	private boolean				_leading;
+
+	private StringBuilder		_whitespaces;
+
+	/**
+	 * Creates a content kept in memory
+	 */
+	public GeneratedContent() {
+		this(null, 0);
+	}
+
+	/**
+	 * @param output
+	 *            output the content is streamed to once it reaches the threshold, or null to keep the content in memory
+	 * @param threshold
+	 *            number of characters kept in memory
+	 */
+	public GeneratedContent(GeneratedFileOutput output, int threshold) {
+		super();
+		_buffer = new StringBuilder();
+		_output = output;
+		_threshold = threshold;
+		_leading = true;
+		_whitespaces = new StringBuilder();
+	}
+
+	/**
+	 * Appends rendered text
+	 *
+	 * @param aString
+	 * @return this content
+	 */
+	public GeneratedContent append(String aString) {
+		_buffer.append(aString);
+		this.didAppend();
+		return this;
+	}
+
+	/**
+	 * Appends a range of rendered text
+	 *
+	 * @param chars
+	 * @param start
+	 * @param end
+	 * @return this content
+	 */
+	public GeneratedContent append(CharSequence chars, int start, int end) {
+		_buffer.append(chars, start, end);
+		this.didAppend();
+		return this;
+	}
+
+	/**
+	 * Appends a rendered character
+	 *
+	 * @param aChar
+	 * @return this content
+	 */
+	public GeneratedContent append(char aChar) {
+		_buffer.append(aChar);
+		this.didAppend();
+		return this;
+	}
+
+	/**
+	 * Appends a value with the XML special characters escaped, like an escaped WOString
+	 *
+	 * @param aString
+	 * @return this content
+	 */
+	public GeneratedContent appendEscapedXMLEntities(String aString) {
+		StringUtils.appendEscapedXMLEntities(aString, _buffer);
+		this.didAppend();
+		return this;
+	}
+
+	/**
+	 * Returns true if the content reached the threshold and is streamed to the output
+	 *
+	 * @return true if the content is streamed
+	 */
+	public boolean isStreamed() {
+		return _streamed;
+	}
+
+	/**
+	 * Returns the rendered content kept in memory, with the XML entities escaped. The whole content if it is not streamed.
+	 *
+	 * @return rendered content
+	 */
+	public String renderedContent() {
+		return _buffer.toString();
+	}
+
+	/**
+	 * Streams the rest of the content and closes the output if the content is streamed
+	 */
+	public void close() {
+		if (_streamed) {
+			this.stream(true);
+			_output.close();
+		}
+	}
+
+	private void didAppend() {
+		if ((_output != null) && (_buffer.length() >= (_streamed ? ChunkSize : _threshold))) {
+			_streamed = true;
+			this.stream(false);
+		}
+	}
+
+	private void stream(boolean last) {
+		int end = _buffer.length();
+		if (!last) {
+			// An entity or a surrogate pair may continue in the next chunk
+			int ampersand = _buffer.indexOf("&", Math.max(0, end - LongestEntityLength + 1));
+			if (ampersand != -1) {
+				end = ampersand;
+			}
+			if ((end > 0) && Character.isHighSurrogate(_buffer.charAt(end - 1))) {
+				end--;
+			}
+		}
+		String chunk = StringUtils.unescapeXMLEntities(_buffer.substring(0, end));
+		_buffer.delete(0, end);
+		int start = 0;
+		int length = chunk.length();
+		if (_leading) {
+			while ((start < length) && (chunk.charAt(start) <= ' ')) {
+				start++;
+			}
+			_leading = (start == length);
+		}
+		int trimmedEnd = length;
+		while ((trimmedEnd > start) && (chunk.charAt(trimmedEnd - 1) <= ' ')) {
+			trimmedEnd--;
+		}
+		if (trimmedEnd > start) {
+			if (_whitespaces.length() > 0) {
+				_output.write(_whitespaces, 0, _whitespaces.length());
+				_whitespaces.setLength(0);
+			}
+			_output.write(chunk, start, trimmedEnd);
+		}
+		// The trailing white spaces are written only if some content follows them
+		if (!_leading) {
+			_whitespaces.append(chunk, trimmedEnd, length);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " buffered: " + _buffer.length() + " streamed: " + _streamed + " output: " + _output + " >";
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares generated content with a file on disk without loading the file in memory. The comparison ignores leading and trailing white spaces and the line
+ * terminators of the file (\n, \r\n or \r), like the previous line by line comparison did.
+ * <p>
+ * When the file has the same length as the encoded content its bytes are compared directly, using a memory mapped buffer for large files. Otherwise the file
+ * is decoded and compared character by character. Both comparisons stop at the first difference.
+ * </p>
+ */
+public class GeneratedFileComparator {
+
+	/**
+	 * Files larger than this size are memory mapped for the byte comparison
+	 */
+	public static final long	MappedFileThreshold	= 256 * 1024;
+
+	private static final int	BufferSize			= 8192;
+
+	private Charset				_charset;
+
+	/**
+	 * @param charset
+	 *            encoding of the files on disk
+	 */
+	public GeneratedFileComparator(Charset charset) {
+		super();
+		_charset = (charset != null ? charset : Charset.defaultCharset());
+	}
+
+	/**
+	 * Returns the encoding of the files on disk
+	 *
+	 * @return charset
+	 */
+	public Charset charset() {
+		return _charset;
+	}
+
+	/**
+	 * Checks if the generated content is identical to the existing file on disk.
+	 *
+	 * @param generatedContent
+	 * @param aFile
+	 * @return true if the file exists and has the same content
+	 * @throws IOException
+	 */
+	public boolean isIdentical(String generatedContent, File aFile) throws IOException {
+		if ((aFile == null) || !aFile.isFile()) {
+			return false;
+		}
+		String expected = generatedContent.trim();
+		byte[] expectedBytes = expected.getBytes(_charset);
+		try (FileChannel channel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size == expectedBytes.length && this.hasSameBytes(channel, size, expectedBytes)) {
+				return true;
+			}
+			// Only white spaces and line terminators can make the file longer than the content
+			if (size < expectedBytes.length) {
+				return false;
+			}
+			channel.position(0);
+			return this.hasSameTrimmedContent(channel, expected);
+		}
+	}
+
+	/**
+	 * Checks if the generated file, already trimmed, is identical to the existing file on disk. Used for the content streamed to a temporary file, when its
+	 * bytes differ from the bytes of the existing file.
+	 *
+	 * @param generatedFile
+	 * @param aFile
+	 * @return true if the file exists and has the same content
+	 * @throws IOException
+	 */
+	public boolean isIdentical(File generatedFile, File aFile) throws IOException {
+		if ((aFile == null) || !aFile.isFile()) {
+			return false;
+		}
+		try (FileChannel generated = FileChannel.open(generatedFile.toPath(), StandardOpenOption.READ);
+				FileChannel channel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ)) {
+			// Only white spaces and line terminators can make the file longer than the content
+			if (channel.size() < generated.size()) {
+				return false;
+			}
+			return this.hasSameTrimmedContent(channel, Channels.newReader(generated, this.newDecoder(), BufferSize));
+		}
+	}
+
+	/**
+	 * Compares the bytes of the file with the expected bytes
+	 *
+	 * @param channel
+	 * @param size
+	 * @param expectedBytes
+	 * @return true if all the bytes are identical
+	 * @throws IOException
+	 */
+	protected boolean hasSameBytes(FileChannel channel, long size, byte[] expectedBytes) throws IOException {
+		if (size >= MappedFileThreshold) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			for (int index = 0; index < expectedBytes.length; index++) {
+				if (buffer.get(index) != expectedBytes[index]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(BufferSize);
+		int index = 0;
+		while (index < expectedBytes.length) {
+			buffer.clear();
+			int count = channel.read(buffer, index);
+			if (count <= 0) {
+				return false;
+			}
+			for (int position = 0; position < count; position++, index++) {
+				if ((index >= expectedBytes.length) || (buffer.get(position) != expectedBytes[index])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the decoded file with the expected content, ignoring leading and trailing white spaces and normalizing the line terminators of the file.
+	 *
+	 * @param channel
+	 * @param expected
+	 *            trimmed expected content
+	 * @return true if the contents are identical
+	 * @throws IOException
+	 */
+	protected boolean hasSameTrimmedContent(FileChannel channel, String expected) throws IOException {
+		return this.hasSameTrimmedContent(channel, new StringReader(expected));
+	}
+
+	/**
+	 * Compares the decoded file with the expected content read from the reader, ignoring leading and trailing white spaces and normalizing the line terminators
+	 * of the file.
+	 *
+	 * @param channel
+	 * @param expected
+	 *            reader of the trimmed expected content
+	 * @return true if the contents are identical
+	 * @throws IOException
+	 */
+	protected boolean hasSameTrimmedContent(FileChannel channel, Reader expected) throws IOException {
+		Reader reader = Channels.newReader(channel, this.newDecoder(), BufferSize);
+		CharBuffer buffer = CharBuffer.allocate(BufferSize);
+		CharBuffer expectedBuffer = CharBuffer.allocate(BufferSize);
+		expectedBuffer.flip();
+		boolean leading = true;
+		boolean afterCarriageReturn = false;
+		while (reader.read(buffer) != -1) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				char ch = buffer.get();
+				if (ch == '\r') {
+					ch = '\n';
+					afterCarriageReturn = true;
+				} else if (ch == '\n' && afterCarriageReturn) {
+					afterCarriageReturn = false;
+					continue;
+				} else {
+					afterCarriageReturn = false;
+				}
+				if (leading && ch <= ' ') {
+					continue;
+				}
+				leading = false;
+				if (GeneratedFileComparator.fill(expectedBuffer, expected)) {
+					if (ch != expectedBuffer.get()) {
+						return false;
+					}
+				} else if (ch > ' ') {
+					return false;
+				}
+			}
+			buffer.clear();
+		}
+		return !GeneratedFileComparator.fill(expectedBuffer, expected);
+	}
+
+	/**
+	 * Reads the next characters in the buffer if it is empty
+	 *
+	 * @param buffer
+	 * @param reader
+	 * @return true if the buffer has remaining characters
+	 * @throws IOException
+	 */
+	private static boolean fill(CharBuffer buffer, Reader reader) throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int count = reader.read(buffer);
+			buffer.flip();
+			return count > 0;
+		}
+		return true;
+	}
+
+	private CharsetDecoder newDecoder() {
+		return _charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " charset: '" + _charset + "' >";
+	}
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams generated content to a temporary file in the output encoding, then the file writer moves the temporary file in place. The encoded bytes are compared
+ * with the bytes of the existing file as they are written, so an unchanged file is detected in the same pass without keeping the content in memory.
+ * <p>
+ * The first exception is remembered and the following writes are ignored, like a PrintWriter; a failed output is neither identical nor written.
+ * </p>
+ *
+ * @see GeneratedContent
+ * @see GeneratedFileWriter#write(GeneratedFileOutput)
+ */
+public class GeneratedFileOutput {
+
+	private static final int	BufferSize		= 8192;
+
+	private File				_file;
+
+	private File				_temporaryDirectory;
+
+	private CharsetEncoder		_encoder;
+
+	private ByteBuffer			_bytes;
+
+	private ByteBuffer			_existingBytes;
+
+	private Path				_temporary;
+
+	private FileChannel			_channel;
+
+	private FileChannel			_existingChannel;
+
+	private boolean				_identical;
+
+	private boolean				_closed;
+
+	private long				_size;
+
+	private IOException			_exception;
+
+	/**
+	 * @param aFile
+	 *            generated file
+	 * @param charset
+	 *            encoding of the generated file
+	 * @param temporaryDirectory
+	 *            directory of the temporary file, or null for the directory of the generated file
+	 */
+	public GeneratedFileOutput(File aFile, Charset charset, File temporaryDirectory) {
+		super();
+		_file = aFile;
+		_temporaryDirectory = temporaryDirectory;
+		// Replaces the unmappable characters like the file writer
+		_encoder = (charset != null ? charset : Charset.defaultCharset()).newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+				CodingErrorAction.REPLACE);
+		_bytes = ByteBuffer.allocate(BufferSize);
+		_existingBytes = ByteBuffer.allocate(BufferSize);
+	}
+
+	/**
+	 * Returns the generated file
+	 *
+	 * @return file
+	 */
+	public File file() {
+		return _file;
+	}
+
+	/**
+	 * Returns the temporary file holding the content written so far
+	 *
+	 * @return temporary file, or null if nothing was written
+	 */
+	public File temporaryFile() {
+		return (_temporary != null ? _temporary.toFile() : null);
+	}
+
+	/**
+	 * Encodes and writes a range of characters
+	 *
+	 * @param chars
+	 * @param start
+	 * @param end
+	 */
+	public void write(CharSequence chars, int start, int end) {
+		if ((_exception == null) && !_closed) {
+			try {
+				if (_channel == null) {
+					this.open();
+				}
+				this.encode(CharBuffer.wrap(chars, start, end), false);
+			} catch (IOException exception) {
+				_exception = exception;
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending bytes and closes the temporary file. The temporary file is created even if nothing was written.
+	 */
+	public void close() {
+		if (!_closed) {
+			try {
+				if (_exception == null) {
+					if (_channel == null) {
+						this.open();
+					}
+					this.encode(CharBuffer.allocate(0), true);
+					while (_encoder.flush(_bytes).isOverflow()) {
+						this.drain();
+					}
+					this.drain();
+					// The existing file must not be longer than the content
+					_identical = _identical && (_existingChannel.position() == _existingChannel.size());
+				}
+			} catch (IOException exception) {
+				_exception = exception;
+			} finally {
+				_closed = true;
+				this.closeChannels();
+			}
+		}
+	}
+
+	/**
+	 * Closes the output and deletes the temporary file, if it was not moved in place. An output nothing was streamed to is closed without creating its
+	 * temporary file.
+	 */
+	public void discard() {
+		if (_channel == null) {
+			_closed = true;
+		}
+		this.close();
+		if (_temporary != null) {
+			try {
+				Files.deleteIfExists(_temporary);
+			} catch (IOException exception) {
+				// We do not want to report the exception
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the existing file has exactly the bytes written
+	 *
+	 * @return true if the bytes are identical
+	 */
+	public boolean isIdentical() {
+		return _closed && (_exception == null) && _identical;
+	}
+
+	/**
+	 * Returns the number of bytes written
+	 *
+	 * @return size in bytes
+	 */
+	public long size() {
+		return _size;
+	}
+
+	/**
+	 * Returns the first exception raised while writing
+	 *
+	 * @return exception or null
+	 */
+	public IOException exception() {
+		return _exception;
+	}
+
+	private void open() throws IOException {
+		Path target = _file.getAbsoluteFile().toPath();
+		File directory = (_temporaryDirectory != null ? _temporaryDirectory : target.getParent().toFile());
+		if (directory.isDirectory()) {
+			_temporary = GeneratedFileWriter.createTemporaryFile(directory.toPath(), target);
+		} else {
+			// The directory is created when the file is moved in place
+			_temporary = GeneratedFileWriter.createTemporaryFile(Paths.get(System.getProperty("java.io.tmpdir")), target);
+		}
+		_channel = FileChannel.open(_temporary, StandardOpenOption.WRITE);
+		if (Files.isRegularFile(target)) {
+			_existingChannel = FileChannel.open(target, StandardOpenOption.READ);
+			_identical = true;
+		}
+	}
+
+	private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+		while (true) {
+			CoderResult result = _encoder.encode(chars, _bytes, endOfInput);
+			if (result.isOverflow()) {
+				this.drain();
+			} else {
+				if (result.isError()) {
+					result.throwException();
+				}
+				return;
+			}
+		}
+	}
+
+	private void drain() throws IOException {
+		_bytes.flip();
+		if (_identical) {
+			_existingBytes.clear();
+			_existingBytes.limit(_bytes.remaining());
+			while (_existingBytes.hasRemaining() && (_existingChannel.read(_existingBytes) >= 0)) {
+				// Reads until the buffer is full or the end of the file
+			}
+			_existingBytes.flip();
+			_identical = _existingBytes.equals(_bytes);
+		}
+		while (_bytes.hasRemaining()) {
+			_size += _channel.write(_bytes);
+		}
+		_bytes.clear();
+	}
+
+	private void closeChannels() {
+		try {
+			if (_channel != null) {
+				_channel.close();
+			}
+			if (_existingChannel != null) {
+				_existingChannel.close();
+			}
+		} catch (IOException exception) {
+			if (_exception == null) {
+				_exception = exception;
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " file: '" + _file + "' size: " + _size + " identical: " + _identical + " exception: " + _exception + " >";
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes the generated files in the output encoding. Each file is written to a temporary file in its destination directory then moved in place, so an
+ * interrupted generation never leaves a half written source file behind. The characters the encoding cannot represent are replaced, as a FileWriter does.
+ * <p>
+ * A replaced file keeps its permissions, and a new file gets the permissions rw-r--r-- restricted by the umask. A read-only file is not replaced unless the
+ * writer overwrites the read-only files.
+ * </p>
+ * <p>
+ * The writer remembers the directories it created, so a package directory is only created once however many files are generated in it. A writer can be shared
+ * by concurrent generations.
+ * </p>
+ */
+public class GeneratedFileWriter {
+
+	private static final String						TemporarySuffix		= ".tmp";
+
+	private static final Set<PosixFilePermission>	NewFilePermissions	= PosixFilePermissions.fromString("rw-r--r--");
+
+	private Charset									_charset;
+
+	private boolean									_overwritesReadOnlyFiles;
+
+	private Set<File>								_directories;
+
+	/**
+	 * @param charset
+	 *            encoding of the generated files
+	 */
+	public GeneratedFileWriter(Charset charset) {
+		this(charset, false);
+	}
+
+	/**
+	 * @param charset
+	 *            encoding of the generated files
+	 * @param overwritesReadOnlyFiles
+	 *            true to replace the read-only files
+	 */
+	public GeneratedFileWriter(Charset charset, boolean overwritesReadOnlyFiles) {
+		super();
+		_charset = (charset != null ? charset : Charset.defaultCharset());
+		_overwritesReadOnlyFiles = overwritesReadOnlyFiles;
+		_directories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+	}
+
+	/**
+	 * Returns the encoding of the generated files
+	 *
+	 * @return charset
+	 */
+	public Charset charset() {
+		return _charset;
+	}
+
+	/**
+	 * Writes the content to the file, replacing the existing file atomically when the file system supports it.
+	 *
+	 * @param content
+	 * @param aFile
+	 * @throws IOException
+	 */
+	public void write(String content, File aFile) throws IOException {
+		Path target = aFile.getAbsoluteFile().toPath();
+		this.checkWritable(target);
+		Path directory = target.getParent();
+		this.ensureDirectory(directory.toFile());
+		Path temporary = GeneratedFileWriter.createTemporaryFile(directory, target);
+		try {
+			// Unlike Files.newBufferedWriter, the writer replaces the unmappable characters
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temporary), _charset))) {
+				out.write(content);
+			}
+			this.copyPermissions(target, temporary);
+			try {
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException exception) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Moves the temporary file of the output in place, replacing the existing file atomically when the file system supports it.
+	 *
+	 * @param output
+	 *            closed output
+	 * @throws IOException
+	 *             the exception raised while writing the output, or while moving it
+	 */
+	public void write(GeneratedFileOutput output) throws IOException {
+		if (output.exception() != null) {
+			throw output.exception();
+		}
+		Path target = output.file().getAbsoluteFile().toPath();
+		this.checkWritable(target);
+		this.ensureDirectory(target.getParent().toFile());
+		Path temporary = output.temporaryFile().toPath();
+		this.copyPermissions(target, temporary);
+		try {
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException exception) {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Returns true if the existing read-only files are replaced
+	 *
+	 * @return true if the read-only files are overwritten
+	 */
+	public boolean overwritesReadOnlyFiles() {
+		return _overwritesReadOnlyFiles;
+	}
+
+	/**
+	 * Returns true if the file exists and is read-only. On a POSIX file system a file is read-only when its owner cannot write it, whatever the user running the
+	 * generation.
+	 *
+	 * @param aFile
+	 * @return true if the file is read-only
+	 */
+	public boolean isReadOnly(File aFile) {
+		Path aPath = aFile.getAbsoluteFile().toPath();
+		if (!Files.exists(aPath)) {
+			return false;
+		}
+		if (GeneratedFileWriter.isPosix(aPath)) {
+			try {
+				return !Files.getPosixFilePermissions(aPath).contains(PosixFilePermission.OWNER_WRITE);
+			} catch (IOException exception) {
+				// Falls back on the access check
+			}
+		}
+		return !Files.isWritable(aPath);
+	}
+
+	private void checkWritable(Path target) throws IOException {
+		if (!_overwritesReadOnlyFiles && this.isReadOnly(target.toFile())) {
+			throw new AccessDeniedException(target.toString(), null, "read-only file");
+		}
+	}
+
+	private void copyPermissions(Path target, Path temporary) throws IOException {
+		if (Files.exists(target) && GeneratedFileWriter.isPosix(target)) {
+			Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+		}
+	}
+
+	private static boolean isPosix(Path aPath) {
+		return aPath.getFileSystem().supportedFileAttributeViews().contains("posix");
+	}
+
+	/**
+	 * Creates an empty temporary file for the target in the directory. On a POSIX file system the file is created with the permissions rw-r--r-- restricted by
+	 * the umask, the permissions of a new file written in place, where Files.createTempFile creates an owner only file.
+	 *
+	 * @param directory
+	 * @param target
+	 *            file the temporary file is moved to
+	 * @return new temporary file
+	 * @throws IOException
+	 */
+	static Path createTemporaryFile(Path directory, Path target) throws IOException {
+		while (true) {
+			Path temporary = directory.resolve("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TemporarySuffix);
+			try {
+				if (GeneratedFileWriter.isPosix(directory)) {
+					return Files.createFile(temporary, PosixFilePermissions.asFileAttribute(NewFilePermissions));
+				}
+				return Files.createFile(temporary);
+			} catch (FileAlreadyExistsException exception) {
+				// Tries another name
+			}
+		}
+	}
+
+	/**
+	 * Creates the directory and its parents unless this writer already did. The directory is only remembered once it exists, so a failed creation is tried
+	 * again by the next file.
+	 *
+	 * @param aDirectory
+	 */
+	public void ensureDirectory(File aDirectory) {
+		if ((aDirectory != null) && !_directories.contains(aDirectory)) {
+			synchronized (this) {
+				if (!_directories.contains(aDirectory)) {
+					if (!aDirectory.isDirectory()) {
+						aDirectory.mkdirs();
+					}
+					if (aDirectory.isDirectory()) {
+						_directories.add(aDirectory);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the directories created so far
+	 */
+	public void clear() {
+		_directories.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " charset: '" + _charset + "' directories: " + _directories.size() + " >";
+	}
+
+}
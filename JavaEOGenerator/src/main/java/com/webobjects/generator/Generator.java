@@ -12,16 +12,23 @@
  */
 package com.webobjects.generator;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.webobjects.foundation._NSDelegate;
 
@@ -30,20 +37,95 @@ import com.webobjects.foundation._NSDelegate;
  */
 public class Generator {
 
+	/**
+	 * Exit status of a dry run that would create or change files
+	 */
+	public static final int				DryRunChangesExitStatus	= 1;
+
+	/**
+	 * Exit status of a merge of shards that did not find the files of all the shards
+	 */
+	public static final int				MissingShardsExitStatus	= 2;
+
+	/**
+	 * Exit status of a generation that failed to generate some objects
+	 */
+	public static final int				FailedObjectsExitStatus	= 3;
+
+	private static final String			LineSeparator			= System.getProperty("line.separator");
+
 	/**
 	 * Configuration object
 	 */
-	protected Configuration		_configuration;
+	protected Configuration				_configuration;
+
+	/**
+	 * Option values of the configuration, resolved once the generator is configured
+	 */
+	protected ResolvedConfiguration		_resolvedConfiguration;
+
+	/**
+	 * Files the dry run would create, change or leave unchanged
+	 */
+	protected GeneratorDryRunReport		_dryRunReport;
+
+	private int							_mergeStatus;
+
+	private Set<String>					_failedObjects			= Collections.synchronizedSet(new TreeSet<String>());
 
 	/**
 	 * Generation context
 	 */
-	protected GeneratorContext	_context;
+	protected GeneratorContext			_context;
+
+	/**
+	 * Parsed templates shared by all the components of the generation run
+	 */
+	protected GeneratorTemplateCache	_templateCache;
+
+	/**
+	 * Engine parsing and rendering the templates
+	 */
+	protected GeneratorTemplateEngine	_templateEngine;
+
+	/**
+	 * Manifest of the generated files for incremental generation
+	 */
+	protected GeneratorManifest			_manifest;
+
+	/**
+	 * Comparator of the generated files with the existing files
+	 */
+	protected GeneratedFileComparator	_fileComparator;
+
+	/**
+	 * Loader of the template files
+	 */
+	protected GeneratorTemplateLoader	_templateLoader;
+
+	/**
+	 * Writer of the generated files
+	 */
+	protected GeneratedFileWriter		_fileWriter;
+
+	/**
+	 * Timings and counters of the generation run
+	 */
+	protected GeneratorStatistics		_statistics;
+
+	/**
+	 * Profile of the rendering of the templates
+	 */
+	protected GeneratorProfiler			_profiler;
+
+	private ThreadLocal<GeneratorContext>	_workerContext	= new ThreadLocal<GeneratorContext>();
+
+	private ThreadLocal<List<String>>		_workerLog		= new ThreadLocal<List<String>>();
 
 	/**
 	 * Java file extension
 	 */
-	public static final String	JavaFileExtension	= ".java";
+	public static final String			JavaFileExtension	= ".java";
 
 	/**
 	 * This interface defines a delegate to the Generator class to allow easy subclassing of the Generator.
@@ -95,196 +177,952 @@ public class Generator {
 	}
 
 	/**
-	 * Returns a new instance of Generator using the class delegate if it exists.
+	 * Returns a new instance of Generator using the class delegate if it exists.
+	 *
+	 * @return new instance of Generator
+	 */
+	public static Generator newGenerator() {
+		Generator generator = null;
+		// give our delegate (IB or EOModeler, perhaps) a chance to pick the generator
+		if (_generatorClassDelegate != null && _generatorClassDelegate.respondsTo("newGenerator")) {
+			generator = (Generator) _generatorClassDelegate.perform("newGenerator");
+		}
+		return (generator != null ? generator : new Generator());
+	}
+
+	/**
+	 * Factory method to create a new Configuration object.
+	 *
+	 * @param argv
+	 *            array of string passed to the application.
+	 * @return newly initialized Configuration Object
+	 */
+	protected Configuration createConfiguration(String argv[]) {
+		return new Configuration(argv);
+	}
+
+	/**
+	 * Return the generator context
+	 *
+	 * @return generator context
+	 */
+	public GeneratorContext context() {
+		GeneratorContext workerContext = _workerContext.get();
+		if (workerContext != null) {
+			return workerContext;
+		}
+		if (_context == null) {
+			_context = this.createContext();
+			_context.setTemplateCache(this.templateCache());
+			_context.setProfiler(this.profiles() ? this.profiler() : null);
+		}
+		return _context;
+	}
+
+	/**
+	 * Factory method to create a new context
+	 *
+	 * @return new context
+	 */
+	protected GeneratorContext createContext() {
+		return new GeneratorContext(_configuration);
+	}
+
+	/**
+	 * Return the cache of parsed templates shared by the generation run
+	 *
+	 * @return template cache
+	 */
+	public synchronized GeneratorTemplateCache templateCache() {
+		if (_templateCache == null) {
+			_templateCache = this.createTemplateCache();
+		}
+		return _templateCache;
+	}
+
+	/**
+	 * Factory method to create a new template cache
+	 *
+	 * @return new template cache
+	 */
+	protected GeneratorTemplateCache createTemplateCache() {
+		return new GeneratorTemplateCache();
+	}
+
+	/**
+	 * Return the engine parsing and rendering the templates of the components
+	 *
+	 * @return template engine
+	 */
+	public synchronized GeneratorTemplateEngine templateEngine() {
+		if (_templateEngine == null) {
+			_templateEngine = this.createTemplateEngine();
+		}
+		return _templateEngine;
+	}
+
+	/**
+	 * Factory method to create a new template engine, as selected by the templateEngine option: the component templates by default. The compiled templates fall
+	 * back to the component templates for the templates they do not support.
+	 *
+	 * @return new template engine
+	 */
+	protected GeneratorTemplateEngine createTemplateEngine() {
+		GeneratorTemplateEngine componentEngine = new ComponentTemplateEngine(this.templateCache());
+		String engineName = (_resolvedConfiguration != null ? _resolvedConfiguration.templateEngine() : Configuration.ComponentTemplateEngineName);
+		if (Configuration.CompiledTemplateEngineName.equals(engineName)) {
+			return new CompiledTemplateEngine(componentEngine);
+		}
+		if (!Configuration.ComponentTemplateEngineName.equals(engineName)) {
+			this.logStatement("Unknown template engine: '" + engineName + "', using '" + Configuration.ComponentTemplateEngineName + "'", true);
+		}
+		return componentEngine;
+	}
+
+	/**
+	 * Runs the task with its own generator context and log. While the task runs on the current thread, context() returns a new context sharing the template cache
+	 * of the generator, and the statements logged are collected instead of being printed. This allows several tasks to generate concurrently, as the components
+	 * and their local variables are never shared between tasks.
+	 *
+	 * @param task
+	 * @return statements logged by the task, to be printed with printLog(List)
+	 */
+	protected List<String> runInWorkerContext(Runnable task) {
+		List<String> log = new ArrayList<String>();
+		this.runInWorkerContext(task, log);
+		return log;
+	}
+
+	/**
+	 * Runs the task with its own generator context, collecting the statements logged in the log. The log is owned by the caller, so the statements logged before
+	 * the task failed can still be printed.
+	 *
+	 * @param task
+	 * @param log
+	 *            list receiving the statements logged by the task, to be printed with printLog(List)
+	 */
+	protected void runInWorkerContext(Runnable task, List<String> log) {
+		GeneratorContext workerContext = this.createContext();
+		workerContext.setTemplateCache(this.templateCache());
+		workerContext.setProfiler(this.profiles() ? this.profiler() : null);
+		_workerContext.set(workerContext);
+		_workerLog.set(log);
+		try {
+			task.run();
+		} finally {
+			_workerContext.remove();
+			_workerLog.remove();
+		}
+	}
+
+	/**
+	 * Prints statements collected by runInWorkerContext(Runnable)
+	 *
+	 * @param log
+	 */
+	protected void printLog(List<String> log) {
+		for (String statement : log) {
+			this.println(statement);
+		}
+	}
+
+	/**
+	 * Configure the generator with a set of arguments.
+	 *
+	 * @param argv
+	 */
+	public void configure(String argv[]) {
+		_configuration = this.createConfiguration(argv);
+		_resolvedConfiguration = (_configuration != null ? _configuration.resolvedConfiguration() : null);
+	}
+
+	/**
+	 * Logs a statement to the console if in verbose mode
+	 *
+	 * @param log
+	 */
+	protected void logStatement(String log) {
+		this.logStatement(log, this.verbose());
+	}
+
+	/**
+	 * Logs a statement to the console
+	 *
+	 * @param log
+	 * @param verbose
+	 */
+	protected void logStatement(String log, boolean verbose) {
+		if (verbose) {
+			List<String> workerLog = _workerLog.get();
+			if (workerLog != null) {
+				workerLog.add(log);
+			} else {
+				this.println(log);
+			}
+		}
+	}
+
+	/**
+	 * Logs the stack trace of an exception to the console, whether in verbose mode or not. On a worker thread the stack trace is collected with the other
+	 * statements of the task.
+	 *
+	 * @param exception
+	 */
+	protected void logException(Throwable exception) {
+		StringWriter stackTrace = new StringWriter();
+		PrintWriter writer = new PrintWriter(stackTrace);
+		exception.printStackTrace(writer);
+		writer.flush();
+		String log = stackTrace.toString();
+		this.logStatement(log.endsWith(LineSeparator) ? log.substring(0, log.length() - LineSeparator.length()) : log, true);
+	}
+
+	/**
+	 * Prints a statement. The base implementation does nothing and needs to be overwritten to display anything.
+	 *
+	 * @param log
+	 */
+	protected void println(String log) {
+	// Place holder should be verwritten by subclasses
+	}
+
+	/**
+	 * Excecute the generation based on the arguments.
+	 */
+	public void run() {
+		if (this.help()) {
+			this.showHelp();
+		}
+		if (this.version()) {
+			this.showVersion();
+		}
+		if (this.verbose()) {
+			this.logStatement(this.toString(), true);
+		}
+
+		if (this.mergesShards()) {
+			this.mergeShards();
+			return;
+		}
+
+		this.logStatement("Start generation");
+		this.generate();
+		this.saveManifest();
+		this.statistics().end();
+		if (this.verbose()) {
+			this.logStatement("Template engine: " + this.templateEngine(), true);
+		}
+		this.showStatistics();
+		this.showProfile();
+		this.showDryRunReport();
+		this.showFailedObjects();
+		this.logStatement("End generation");
+	}
+
+	/**
+	 * Returns the exit status of the generation: FailedObjectsExitStatus if some objects could not be generated, DryRunChangesExitStatus if the dry run would
+	 * create or change files, MissingShardsExitStatus if the merge of the shards did not find all the shards, 0 otherwise.
+	 *
+	 * @return exit status
+	 */
+	public int exitStatus() {
+		if (this.mergesShards()) {
+			return _mergeStatus;
+		}
+		if (!_failedObjects.isEmpty()) {
+			return FailedObjectsExitStatus;
+		}
+		return (this.dryRun() && this.dryRunReport().hasChanges() ? DryRunChangesExitStatus : 0);
+	}
+
+	/**
+	 * Records an object whose files could not be generated, because a template raised an exception or a file could not be written
+	 *
+	 * @param name
+	 *            name of the object in the logs
+	 */
+	public void recordFailedObject(String name) {
+		_failedObjects.add(name);
+	}
+
+	/**
+	 * Returns the names of the objects whose files could not be generated
+	 *
+	 * @return sorted names
+	 */
+	public List<String> failedObjects() {
+		synchronized (_failedObjects) {
+			return new ArrayList<String>(_failedObjects);
+		}
+	}
+
+	/**
+	 * Logs the objects whose files could not be generated, if any
+	 */
+	protected void showFailedObjects() {
+		List<String> failedObjects = this.failedObjects();
+		if (failedObjects.size() > 0) {
+			this.logStatement("Failed to generate " + failedObjects.size() + " objects: " + failedObjects, true);
+		}
+	}
+
+	/**
+	 * Returns true if the generator keeps running after the generation to generate again the changed objects. The base implementation returns false.
+	 *
+	 * @return true if the generator watches its sources
+	 */
+	public boolean watches() {
+		return false;
+	}
+
+	/**
+	 * Watches the sources of the generation and generates again the objects affected by the changes, until the thread is interrupted. The base implementation
+	 * does nothing and needs to be overwritten by the generators supporting it.
+	 */
+	public void watch() {
+	// Place holder should be overwritten by subclasses
+	}
+
+	/**
+	 * Returns the files the dry run would create, change or leave unchanged
+	 *
+	 * @return dry run report
+	 */
+	public synchronized GeneratorDryRunReport dryRunReport() {
+		if (_dryRunReport == null) {
+			_dryRunReport = this.createDryRunReport();
+		}
+		return _dryRunReport;
+	}
+
+	/**
+	 * Factory method to create a new dry run report. The sizes of the generated files are computed in the output encoding.
+	 *
+	 * @return new dry run report
+	 */
+	protected GeneratorDryRunReport createDryRunReport() {
+		return new GeneratorDryRunReport(this.outputCharset());
+	}
+
+	/**
+	 * Prints the files the dry run would create or change and writes the report if the dryrun argument was set.
+	 */
+	public void showDryRunReport() {
+		if (this.dryRun()) {
+			// We force the report display even if verbose is not set
+			this.logStatement(this.dryRunReport().summary(), true);
+			String path = (_resolvedConfiguration != null ? _resolvedConfiguration.dryRunReport() : "");
+			if (path.length() > 0) {
+				try {
+					this.dryRunReport().write(new File(path));
+				} catch (IOException exception) {
+					this.logStatement("Cannot write dry run report: '" + path + "', " + exception.toString(), true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the timings and counters of the generation run
+	 *
+	 * @return statistics
+	 */
+	public synchronized GeneratorStatistics statistics() {
+		if (_statistics == null) {
+			_statistics = this.createStatistics();
+		}
+		return _statistics;
+	}
+
+	/**
+	 * Factory method to create new statistics
+	 *
+	 * @return new statistics
+	 */
+	protected GeneratorStatistics createStatistics() {
+		return new GeneratorStatistics();
+	}
+
+	/**
+	 * Prints the statistics summary and writes the JSON report if the stats argument was set.
+	 */
+	public void showStatistics() {
+		if (this.showsStatistics()) {
+			int top = (_resolvedConfiguration != null ? _resolvedConfiguration.statisticsTop() : 10);
+			// We force the statistics display even if verbose is not set
+			this.logStatement(this.statistics().summary(top), true);
+			String path = (_resolvedConfiguration != null ? _resolvedConfiguration.statisticsJSON() : "");
+			if (path.length() > 0) {
+				File aFile = this.shardFile(new File(path));
+				try {
+					this.statistics().writeJSON(top, aFile);
+				} catch (IOException exception) {
+					this.logStatement("Cannot write statistics: '" + aFile + "', " + exception.toString(), true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the profile of the rendering of the templates
+	 *
+	 * @return profiler
+	 */
+	public synchronized GeneratorProfiler profiler() {
+		if (_profiler == null) {
+			_profiler = this.createProfiler();
+		}
+		return _profiler;
+	}
+
+	/**
+	 * Factory method to create a new profiler
+	 *
+	 * @return new profiler
+	 */
+	protected GeneratorProfiler createProfiler() {
+		return new GeneratorProfiler();
+	}
+
+	/**
+	 * Prints the slowest template frames and writes the collapsed stacks if the profile argument was set.
+	 */
+	public void showProfile() {
+		if (this.profiles()) {
+			int top = (_resolvedConfiguration != null ? _resolvedConfiguration.statisticsTop() : 10);
+			// We force the profile display even if verbose is not set
+			this.logStatement(this.profiler().summary(top), true);
+			File aFile = this.shardFile(new File(_resolvedConfiguration.profile()));
+			try {
+				this.profiler().writeCollapsedStacks(aFile);
+			} catch (IOException exception) {
+				this.logStatement("Cannot write template profile: '" + aFile + "', " + exception.toString(), true);
+			}
+		}
+	}
+
+	/**
+	 * Generate the java file for the requested options. The defualt implementation does nothing.
+	 */
+	public void generate() {
+	// Stub
+	}
+
+	/**
+	 * Generates the required files for the target
+	 *
+	 * @param targetObject
+	 */
+	public void generateForTargetObject(Object targetObject) {
+		String name = this.nameForTargetObject(targetObject);
+		this.statistics().beginObject(name);
+		boolean generated = false;
+		try {
+			generated = this.generateFilesForTargetObject(targetObject);
+		} finally {
+			if (!generated) {
+				// Also when a template raised an exception
+				this.recordFailedObject(name);
+			}
+			this.statistics().endObject();
+		}
+	}
+
+	/**
+	 * Returns the name of the target object in the logs and statistics
+	 *
+	 * @param targetObject
+	 * @return name
+	 */
+	protected String nameForTargetObject(Object targetObject) {
+		if (targetObject instanceof GeneratorProxy<?>) {
+			return ((GeneratorProxy<?>) targetObject).name();
+		}
+		String manifestKey = this.manifestKeyForTargetObject(targetObject);
+		return (manifestKey != null ? manifestKey : String.valueOf(targetObject));
+	}
+
+	/**
+	 * Prepares the target object before its files are generated. The time spent is recorded as proxy construction. The default implementation does nothing.
+	 *
+	 * @param targetObject
+	 */
+	protected void prepareTargetObject(Object targetObject) {
+	// Stub
+	}
+
+	private boolean generateFilesForTargetObject(Object targetObject) {
+		String manifestKey = this.manifestKeyForTargetObject(targetObject);
+		String fingerprint = this.fingerprintForTargetObject(targetObject);
+		if ((manifestKey != null) && this.isSharded()) {
+			// The merge removes the entries this shard removed
+			this.manifest().recordPartitionKey(manifestKey);
+		}
+		// A dry run renders the objects to compare them with the existing files, which may have changed since the manifest was written
+		if ((fingerprint != null) && !this.dryRun() && this.manifest().isUpToDate(fingerprint, manifestKey)) {
+			if (this.verbose()) {
+				this.logStatement("Unchanged since the last generation: '" + manifestKey + "'", true);
+			}
+			this.statistics().recordUnchangedObject();
+			return true;
+		}
+		long startTime = System.nanoTime();
+		this.prepareTargetObject(targetObject);
+		this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.ProxyConstruction);
+		List<String> generatedFiles = new ArrayList<String>();
+		boolean generated = true;
+
+		// First the super class
+		URL classUrl = this.urlForClass(targetObject);
+		if (this.verbose()) {
+			this.logStatement("URL for super class: '" + classUrl + "'", true);
+		}
+		if (classUrl != null) {
+			File generatedClassFile = this.fileForURL(classUrl);
+			if (generatedClassFile == null) {
+				this.logStatement("Undefined super class file: '" + classUrl + "'", true);
+				generated = false;
+			}
+			if (this.shouldGenerateClassFile(generatedClassFile)) {
+				if (this.verbose()) {
+					this.logStatement("Generating super class file: '" + generatedClassFile + "'", true);
+				}
+				// A large class is streamed to the output instead of being returned
+				GeneratedFileOutput output = (generatedClassFile != null ? this.createFileOutput(generatedClassFile) : null);
+				try {
+					String generatedFile = this.generateClassFileForTargetObject(targetObject, output);
+					if ((generatedFile == null) || (generatedFile.length() > 0)) {
+						boolean identical = (generatedFile != null ? this.isIdenticalToExistingFile(generatedFile, generatedClassFile) : this
+								.isIdenticalToExistingFile(output, generatedClassFile));
+						if (!identical) {
+							if (this.verbose()) {
+								this.logStatement("Overwritting super class file: '" + generatedClassFile + "'", true);
+							}
+							boolean written = (generatedFile != null ? this.writeFile(generatedFile, generatedClassFile) : this.writeFile(output, generatedClassFile));
+							if (written) {
+								this.statistics().recordWrittenFile();
+							} else {
+								this.logStatement("Cannot write super class file: '" + generatedClassFile + "'", true);
+								generated = false;
+							}
+						} else {
+							if (this.verbose()) {
+								this.logStatement("Skipping super class file: '" + generatedClassFile + "'", true);
+							}
+							this.statistics().recordSkippedFile();
+							if (this.dryRun()) {
+								this.dryRunReport().recordUnchangedFile(generatedClassFile);
+							}
+						}
+					}
+				} finally {
+					if (output != null) {
+						// Deletes the temporary file unless it was moved in place
+						output.discard();
+					}
+				}
+			}
+			if ((generatedClassFile != null) && generatedClassFile.exists()) {
+				generatedFiles.add(generatedClassFile.getAbsolutePath());
+			}
+		} else {
+			this.logStatement("Super class url is null: '" + targetObject + "'", true);
+			generated = false;
+		}
+
+		// Then the sub class
+		URL subClassUrl = this.urlForSubClass(targetObject);
+		if (this.verbose()) {
+			this.logStatement("URL for sub class: '" + subClassUrl + "'", true);
+		}
+		if (subClassUrl != null) {
+			File generatedSubClassFile = this.fileForURL(subClassUrl);
+			if (generatedSubClassFile == null) {
+				this.logStatement("Undefined sub class file: '" + subClassUrl + "'", true);
+				generated = false;
+			}
+			if (this.shouldGenerateSubClassFile(generatedSubClassFile)) {
+				if (this.verbose()) {
+					this.logStatement("Generating sub class file: '" + generatedSubClassFile + "'", true);
+				}
+				this.ensurePathExistance(generatedSubClassFile);
+				String generatedFile = this.generateSubClassFileForTargetObject(targetObject);
+				if (generatedFile.length() > 0) {
+					if (this.writeFile(generatedFile, generatedSubClassFile)) {
+						this.statistics().recordWrittenFile();
+					} else {
+						this.logStatement("Cannot write sub class file: '" + generatedSubClassFile + "'", true);
+						generated = false;
+					}
+				}
+			} else {
+				this.statistics().recordSkippedFile();
+				if (this.dryRun() && (generatedSubClassFile != null)) {
+					this.dryRunReport().recordUnchangedFile(generatedSubClassFile);
+				}
+			}
+			if ((generatedSubClassFile != null) && generatedSubClassFile.exists()) {
+				generatedFiles.add(generatedSubClassFile.getAbsolutePath());
+			}
+		} else {
+			this.logStatement("Sub class url is null: '" + targetObject + "'", true);
+			generated = false;
+		}
+
+		if (fingerprint != null) {
+			if (generated) {
+				this.manifest().setEntryForKey(fingerprint, generatedFiles, manifestKey);
+			} else {
+				this.manifest().removeEntryForKey(manifestKey);
+			}
+		}
+		return generated;
+	}
+
+	/**
+	 * Returns the file of a file url
+	 *
+	 * @param anURL
+	 * @return file, or null if the url is not a file path
+	 */
+	private File fileForURL(URL anURL) {
+		try {
+			return new File(anURL.toURI());
+		} catch (URISyntaxException exception) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the manifest of the generated files, loading it from the destination directory the first time.
+	 *
+	 * @return manifest
+	 */
+	public synchronized GeneratorManifest manifest() {
+		if (_manifest == null) {
+			_manifest = this.createManifest();
+			// A shard starts from the manifest of the whole generation and saves its own
+			File manifestFile = this.manifestFile();
+			try {
+				_manifest.load(manifestFile);
+			} catch (IOException exception) {
+				this.logStatement("Cannot read manifest: '" + manifestFile + "', " + exception.toString(), true);
+			}
+		}
+		return _manifest;
+	}
+
+	/**
+	 * Factory method to create a new manifest, saved to the manifest file of the shard if the generation is sharded
+	 *
+	 * @return new manifest
+	 */
+	protected GeneratorManifest createManifest() {
+		return new GeneratorManifest(this.shardFile(this.manifestFile()));
+	}
+
+	/**
+	 * Returns the manifest file in the destination directory
+	 *
+	 * @return manifest file
+	 */
+	protected File manifestFile() {
+		File directory = null;
+		try {
+			directory = new File(this.destination().toURI());
+		} catch (URISyntaxException exception) {
+			this.logStatement("Undefined path for directory: '" + this.destination() + "'", true);
+		}
+		return new File(directory, GeneratorManifest.ManifestFileName);
+	}
+
+	/**
+	 * Returns the file written by the generated shard in place of the file, or the file if the generation is not sharded
+	 *
+	 * @param aFile
+	 * @return shard file
+	 */
+	protected File shardFile(File aFile) {
+		return (this.isSharded() ? this.shardFile(aFile, _resolvedConfiguration.shardIndex(), _resolvedConfiguration.shardCount()) : aFile);
+	}
+
+	/**
+	 * Returns the file written by a shard in place of the file
+	 *
+	 * @param aFile
+	 * @param index
+	 *            index of the shard from 1 to count
+	 * @param count
+	 *            number of shards
+	 * @return shard file
+	 */
+	protected File shardFile(File aFile, int index, int count) {
+		return new File(aFile.getParentFile(), aFile.getName() + ".shard-" + index + "-of-" + count);
+	}
+
+	/**
+	 * Merges the manifests and the JSON statistics written by the shards of a generation run. The shard manifests are deleted once merged: they hold all the
+	 * entries of the previous run, merging them again would revert the entries generated by the other shards.
+	 */
+	public void mergeShards() {
+		int count = _resolvedConfiguration.mergeShards();
+		if (this.verbose()) {
+			this.logStatement("Merging " + count + " shards", true);
+		}
+		int missing = 0;
+		if (this.incremental()) {
+			File manifestFile = this.manifestFile();
+			GeneratorManifest manifest = new GeneratorManifest(manifestFile);
+			try {
+				manifest.load();
+				Map<String, GeneratorManifest.Entry> initialEntries = manifest.entries();
+				List<File> shardFiles = new ArrayList<File>();
+				for (int index = 1; index <= count; index++) {
+					File shardFile = this.shardFile(manifestFile, index, count);
+					if (shardFile.exists()) {
+						GeneratorManifest shardManifest = new GeneratorManifest(shardFile);
+						shardManifest.load();
+						int merged = manifest.mergeChangedEntries(shardManifest, initialEntries);
+						if (this.verbose()) {
+							this.logStatement("Merged " + merged + " manifest entries of shard " + index + "/" + count, true);
+						}
+						shardFiles.add(shardFile);
+					} else {
+						this.logStatement("Missing manifest of shard " + index + "/" + count + ": '" + shardFile + "'", true);
+						missing++;
+					}
+				}
+				manifest.save();
+				for (File shardFile : shardFiles) {
+					shardFile.delete();
+				}
+			} catch (IOException exception) {
+				this.logStatement("Cannot merge manifest: '" + manifestFile + "', " + exception.toString(), true);
+			}
+		}
+		String path = (_resolvedConfiguration.statistics() ? _resolvedConfiguration.statisticsJSON() : "");
+		if (path.length() > 0) {
+			List<GeneratorStatistics> shardStatistics = new ArrayList<GeneratorStatistics>();
+			for (int index = 1; index <= count; index++) {
+				File shardFile = this.shardFile(new File(path), index, count);
+				try {
+					shardStatistics.add(GeneratorStatistics.readJSON(shardFile));
+				} catch (IOException exception) {
+					this.logStatement("Cannot read statistics of shard " + index + "/" + count + ": '" + shardFile + "', " + exception.toString(), true);
+					missing++;
+				}
+			}
+			_statistics = GeneratorStatistics.mergedStatistics(shardStatistics);
+			this.showStatistics();
+		} else if (_resolvedConfiguration.statistics()) {
+			this.logStatement("The statistics of the shards are merged from their -" + Configuration.StatisticsJSONKey + " reports", true);
+		}
+		_mergeStatus = (missing > 0 ? MissingShardsExitStatus : 0);
+		this.logStatement("Merged " + (count - missing) + " of " + count + " shards", true);
+	}
+
+	/**
+	 * Writes the manifest if the generation is incremental
+	 */
+	protected void saveManifest() {
+		if (this.incremental() && !this.dryRun() && (_manifest != null)) {
+			try {
+				_manifest.save();
+			} catch (IOException exception) {
+				this.logStatement("Cannot write manifest: '" + _manifest.file() + "', " + exception.toString(), true);
+			}
+		}
+	}
+
+	/**
+	 * Returns the key identifying the target object in the manifest. The default implementation returns null: the target object cannot be generated
+	 * incrementally.
+	 *
+	 * @param targetObject
+	 * @return manifest key
+	 */
+	protected String manifestKeyForTargetObject(Object targetObject) {
+		return null;
+	}
+
+	/**
+	 * Returns the fingerprint of everything the generation of the target object depends on: its definition, the templates and the configuration.
 	 *
-	 * @return new instance of Generator
+	 * @param targetObject
+	 * @return fingerprint or null if the generation is not incremental
 	 */
-	public static Generator newGenerator() {
-		Generator generator = null;
-		// give our delegate (IB or EOModeler, perhaps) a chance to pick the generator
-		if (_generatorClassDelegate != null && _generatorClassDelegate.respondsTo("newGenerator")) {
-			generator = (Generator) _generatorClassDelegate.perform("newGenerator");
+	protected String fingerprintForTargetObject(Object targetObject) {
+		if (!this.incremental() || (this.manifestKeyForTargetObject(targetObject) == null)) {
+			return null;
 		}
-		return (generator != null ? generator : new Generator());
+		StringBuilder description = new StringBuilder();
+		this.appendFingerprintForTargetObject(targetObject, description);
+		description.append("\nclass template:\n").append(this.templateForClass(targetObject));
+		description.append("\nsub class template:\n").append(this.templateForSubClass(targetObject));
+		description.append("\nconfiguration:\n");
+		this.appendFingerprintForConfiguration(description);
+		return GeneratorManifest.fingerprint(description);
 	}
 
 	/**
-	 * Factory method to create a new Configuration object.
+	 * Appends the description of the target object to the fingerprint. Subclasses need to override this method to describe everything the templates read from
+	 * the target object.
 	 *
-	 * @param argv
-	 *            array of string passed to the application.
-	 * @return newly initialized Configuration Object
+	 * @param targetObject
+	 * @param description
 	 */
-	protected Configuration createConfiguration(String argv[]) {
-		return new Configuration(argv);
+	protected void appendFingerprintForTargetObject(Object targetObject, StringBuilder description) {
+		description.append(targetObject);
 	}
 
 	/**
-	 * Return the generator context
+	 * Appends the options affecting the generated files to the fingerprint
 	 *
-	 * @return generator context
+	 * @param description
 	 */
-	public GeneratorContext context() {
-		if (_context == null) {
-			_context = this.createContext();
+	protected void appendFingerprintForConfiguration(StringBuilder description) {
+		if (_resolvedConfiguration != null) {
+			description.append("prefix: ").append(_resolvedConfiguration.prefix()).append('\n');
+			description.append("filenameTemplate: ").append(_resolvedConfiguration.filenameTemplate()).append('\n');
+			description.append("packagedirs: ").append(_resolvedConfiguration.packageDirectories()).append('\n');
+			description.append("encoding: ").append(_resolvedConfiguration.encoding()).append('\n');
+			description.append("destination: ").append(this.destination()).append('\n');
+			description.append("subclassDestination: ").append(this.subClassDestination()).append('\n');
+			description.append("defines: ").append(new TreeMap<String, String>(_resolvedConfiguration.additionalKeyValues())).append('\n');
 		}
-		return _context;
 	}
 
 	/**
-	 * Factory method to create a new context
+	 * Checks the that file path exists. If it does not creates it. Each directory is only created once per generation.
 	 *
-	 * @return new context
+	 * @param aFile
 	 */
-	protected GeneratorContext createContext() {
-		return new GeneratorContext(_configuration);
+	protected void ensurePathExistance(File aFile) {
+		if ((aFile != null) && !aFile.exists() && !this.dryRun()) {
+			File path = aFile.getAbsoluteFile().getParentFile();
+			if (path != null) {
+				this.fileWriter().ensureDirectory(path);
+			}
+		}
 	}
 
 	/**
-	 * Configure the generator with a set of arguments.
+	 * Writes the generated file. A dry run records the file in the dry run report instead.
 	 *
-	 * @param argv
+	 * @param generatedFile
+	 * @param aFile
+	 * @return true if the file was written
 	 */
-	public void configure(String argv[]) {
-		_configuration = this.createConfiguration(argv);
+	protected boolean writeFile(String generatedFile, File aFile) {
+		long startTime = System.nanoTime();
+		try {
+			if (this.dryRun()) {
+				this.dryRunReport().recordGeneratedFile(generatedFile, aFile);
+				return true;
+			}
+			this.fileWriter().write(generatedFile, aFile);
+			return true;
+		} catch (IOException exception) {
+			this.logWriteException(exception, aFile);
+			return false;
+		} finally {
+			this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Write);
+		}
 	}
 
 	/**
-	 * Logs a statement to the console if in verbose mode
+	 * Moves the content streamed to the output in place. A dry run records the file in the dry run report instead.
 	 *
-	 * @param log
+	 * @param output
+	 *            closed output
+	 * @param aFile
+	 * @return true if the file was written
 	 */
-	protected void logStatement(String log) {
-		this.logStatement(log, this.verbose());
+	protected boolean writeFile(GeneratedFileOutput output, File aFile) {
+		long startTime = System.nanoTime();
+		try {
+			if (this.dryRun()) {
+				if (output.exception() != null) {
+					throw output.exception();
+				}
+				this.dryRunReport().recordGeneratedFile(output.size(), aFile);
+				return true;
+			}
+			this.fileWriter().write(output);
+			return true;
+		} catch (IOException exception) {
+			this.logWriteException(exception, aFile);
+			return false;
+		} finally {
+			this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Write);
+		}
+	}
+
+	private void logWriteException(IOException exception, File aFile) {
+		if ((exception instanceof AccessDeniedException) && this.fileWriter().isReadOnly(aFile)) {
+			this.logStatement("Warning: the read-only file '" + aFile + "' was not overwritten, use -force to overwrite it", true);
+		} else {
+			this.logStatement("Error writing file : '" + aFile + "', " + exception.toString(), true);
+		}
 	}
 
 	/**
-	 * Logs a statement to the console
+	 * Factory method to create the output a large generated file is streamed to. The output of a dry run writes its temporary file in the temporary
+	 * directory, not next to the generated file.
 	 *
-	 * @param log
-	 * @param verbose
+	 * @param aFile
+	 * @return new file output
 	 */
-	protected void logStatement(String log, boolean verbose) {
-		if (verbose) {
-			this.println(log);
-		}
+	protected GeneratedFileOutput createFileOutput(File aFile) {
+		return new GeneratedFileOutput(aFile, this.outputCharset(), this.dryRun() ? new File(System.getProperty("java.io.tmpdir")) : null);
 	}
 
 	/**
-	 * Prints a statement. The base implementation does nothing and needs to be overwritten to display anything.
+	 * Returns the number of rendered characters of a generated file kept in memory. A larger file is streamed to its output.
 	 *
-	 * @param log
+	 * @return streaming threshold
 	 */
-	protected void println(String log) {
-	// Place holder should be verwritten by subclasses
+	protected int streamingThreshold() {
+		return GeneratedContent.DefaultStreamingThreshold;
 	}
 
 	/**
-	 * Excecute the generation based on the arguments.
+	 * Returns the writer of the generated files
+	 *
+	 * @return file writer
 	 */
-	public void run() {
-		if (this.help()) {
-			this.showHelp();
-		}
-		if (this.version()) {
-			this.showVersion();
+	public synchronized GeneratedFileWriter fileWriter() {
+		if (_fileWriter == null) {
+			_fileWriter = this.createFileWriter();
 		}
-		this.logStatement(this.toString());
-
-		this.logStatement("Start generation");
-		this.generate();
-		this.logStatement("End generation");
+		return _fileWriter;
 	}
 
 	/**
-	 * Generate the java file for the requested options. The defualt implementation does nothing.
+	 * Factory method to create a new file writer writing in the output encoding
+	 *
+	 * @return new file writer
 	 */
-	public void generate() {
-	// Stub
+	protected GeneratedFileWriter createFileWriter() {
+		return new GeneratedFileWriter(this.outputCharset(), this.overwritesReadOnlyFiles());
 	}
 
 	/**
-	 * Generates the required files for the target
+	 * Returns true if the generated files replace the existing read-only files. The default implementation returns false.
 	 *
-	 * @param targetObject
+	 * @return true if the read-only files are overwritten
 	 */
-	public void generateForTargetObject(Object targetObject) {
-		// First the super class
-		URL classUrl = this.urlForClass(targetObject);
-		this.logStatement("URL for super class: '" + classUrl + "'");
-		if (classUrl != null) {
-			File generatedClassFile = null;
-			try {
-				generatedClassFile = new File(classUrl.toURI());
-			} catch (URISyntaxException exception) {
-				this.logStatement("Undefined super class file: '" + classUrl + "'", true);
-			}
-			if (this.shouldGenerateClassFile(generatedClassFile)) {
-				this.logStatement("Generating super class file: '" + generatedClassFile + "'");
-				String generatedFile = this.generateClassFileForTargetObject(targetObject);
-				if (generatedFile.length() > 0) {
-					if (!this.isIdenticalToExistingFile(generatedFile, generatedClassFile)) {
-						this.logStatement("Overwritting super class file: '" + generatedClassFile + "'");
-						this.ensurePathExistance(generatedClassFile);
-						try {
-							BufferedWriter out = new BufferedWriter(new FileWriter(generatedClassFile));
-							out.write(generatedFile);
-							out.flush();
-							out.close();
-						} catch (IOException exception) {
-							this.logStatement("Cannot write super class file: '" + generatedClassFile + "'", true);
-						}
-					} else {
-						this.logStatement("Skipping super class file: '" + generatedClassFile + "'");
-					}
-				}
-			}
-		} else {
-			this.logStatement("Super class url is null: '" + targetObject + "'", true);
-		}
-
-		// Then the sub class
-		URL subClassUrl = this.urlForSubClass(targetObject);
-		this.logStatement("URL for sub class: '" + subClassUrl + "'");
-		if (subClassUrl != null) {
-			File generatedSubClassFile = null;
-			try {
-				generatedSubClassFile = new File(subClassUrl.toURI());
-			} catch (URISyntaxException exception) {
-				this.logStatement("Undefined sub class file: '" + subClassUrl + "'", true);
-			}
-			if (this.shouldGenerateSubClassFile(generatedSubClassFile)) {
-				this.logStatement("Generating sub class file: '" + generatedSubClassFile + "'");
-				this.ensurePathExistance(generatedSubClassFile);
-				String generatedFile = this.generateSubClassFileForTargetObject(targetObject);
-				if (generatedFile.length() > 0) {
-					try {
-						BufferedWriter out = new BufferedWriter(new FileWriter(generatedSubClassFile));
-						out.write(generatedFile);
-						out.flush();
-						out.close();
-					} catch (IOException exception) {
-						this.logStatement("Cannot write sub class file: '" + generatedSubClassFile + "'", true);
-					}
-				}
-			}
-		} else {
-			this.logStatement("Sub class url is null: '" + targetObject + "'", true);
-		}
+	protected boolean overwritesReadOnlyFiles() {
+		return false;
 	}
 
 	/**
-	 * Checks the that file path exists. If it does not creates it.
+	 * Returns the charset of the generated files
 	 *
-	 * @param aFile
+	 * @return output charset
 	 */
-	protected void ensurePathExistance(File aFile) {
-		if ((aFile != null) && !aFile.exists()) {
-			File path = aFile.getParentFile();
-			if (path != null) {
-				path.mkdirs();
-			}
-		}
+	protected Charset outputCharset() {
+		return this.charsetForName(_resolvedConfiguration != null ? _resolvedConfiguration.encoding() : null);
 	}
 
 	/**
@@ -318,19 +1156,64 @@ public class Generator {
 		if ((aFile == null) || (!aFile.exists())) {
 			return false;
 		} else {
-			StringBuilder existingContent = new StringBuilder();
+			long startTime = System.nanoTime();
 			try {
-				BufferedReader in = new BufferedReader(new FileReader(aFile));
-				try {
-					while (in.ready()) {
-						existingContent.append(in.readLine() + "\n");
-					}
-				} catch (IOException exception) {
-					this.logStatement("Error reading existing file : '" + aFile + "', " + exception.toString(), true);
-				}
-			} catch (FileNotFoundException exception) { /* This has already been taken care of */}
-			return existingContent.toString().trim().equals(generatedFile.trim());
+				return this.fileComparator().isIdentical(generatedFile, aFile);
+			} catch (IOException exception) {
+				this.logStatement("Error reading existing file : '" + aFile + "', " + exception.toString(), true);
+				return false;
+			} finally {
+				this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Compare);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the content streamed to the output is identical to the existing file on disk. The bytes are compared while the content is streamed, the
+	 * contents are compared only if the bytes differ.
+	 *
+	 * @param output
+	 *            closed output
+	 * @param aFile
+	 * @return true if the files are identical.
+	 */
+	protected boolean isIdenticalToExistingFile(GeneratedFileOutput output, File aFile) {
+		if ((output.exception() != null) || (aFile == null) || (!aFile.exists())) {
+			return false;
+		} else if (output.isIdentical()) {
+			return true;
+		} else {
+			long startTime = System.nanoTime();
+			try {
+				return this.fileComparator().isIdentical(output.temporaryFile(), aFile);
+			} catch (IOException exception) {
+				this.logStatement("Error reading existing file : '" + aFile + "', " + exception.toString(), true);
+				return false;
+			} finally {
+				this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Compare);
+			}
+		}
+	}
+
+	/**
+	 * Returns the comparator used to check generated files against the existing files
+	 *
+	 * @return file comparator
+	 */
+	public synchronized GeneratedFileComparator fileComparator() {
+		if (_fileComparator == null) {
+			_fileComparator = this.createFileComparator();
 		}
+		return _fileComparator;
+	}
+
+	/**
+	 * Factory method to create a new file comparator. The files are compared in the encoding they are written with.
+	 *
+	 * @return new file comparator
+	 */
+	protected GeneratedFileComparator createFileComparator() {
+		return new GeneratedFileComparator(this.outputCharset());
 	}
 
 	/**
@@ -340,8 +1223,27 @@ public class Generator {
 	 * @return generated class file
 	 */
 	public String generateClassFileForTargetObject(Object targetObject) {
-		String generatedFile = this.generateFileForTargetObject(targetObject, this.templateForClass(targetObject), GeneratorComponent.GenerateSuperclass);
-		this.logStatement("Generated file for  class: \n'" + generatedFile + "'");
+		return this.generateClassFileForTargetObject(targetObject, null);
+	}
+
+	/**
+	 * Generate the class for the target object. A class larger than the streaming threshold is streamed to the output, the output is closed.
+	 *
+	 * @param targetObject
+	 * @param output
+	 *            output of the class file, or null to keep the class in memory
+	 * @return generated class file, or null if the class was streamed to the output
+	 */
+	public String generateClassFileForTargetObject(Object targetObject, GeneratedFileOutput output) {
+		String generatedFile = this.generateFileForTargetObject(targetObject, this.templateForClass(targetObject), GeneratorComponent.GenerateSuperclass,
+				output);
+		if (this.verbose()) {
+			if (generatedFile == null) {
+				this.logStatement("Generated file for  class: " + output.size() + " bytes streamed to '" + output.file() + "'", true);
+			} else {
+				this.logStatement("Generated file for  class: \n'" + generatedFile + "'", true);
+			}
+		}
 		return generatedFile;
 	}
 
@@ -352,18 +1254,89 @@ public class Generator {
 	 * @return generated class file
 	 */
 	public String generateSubClassFileForTargetObject(Object targetObject) {
-		String generatedFile = this.generateFileForTargetObject(targetObject, this.templateForSubClass(targetObject), GeneratorComponent.GenerateSubclass);
-		this.logStatement("Generated file for sub class: \n'" + generatedFile + "'");
+		String generatedFile = this.generateFileForTargetObject(targetObject, this.templateForSubClass(targetObject), GeneratorComponent.GenerateSubclass,
+				null);
+		if (this.verbose()) {
+			this.logStatement("Generated file for sub class: \n'" + generatedFile + "'", true);
+		}
 		return generatedFile;
 	}
 
-	private <T> String generateFileForTargetObject(T targetObject, String fileTemplate, Boolean superclass) {
+	private <T> String generateFileForTargetObject(T targetObject, String fileTemplate, Boolean superclass, GeneratedFileOutput output) {
 		GeneratorComponent<T> template = this.componentForTargetObject(targetObject);
 		template.setTargetObject(targetObject);
 		template.setSuperclassGeneration(superclass);
 		template.setTemplateString(fileTemplate);
-		template.setSuperClassPrefix(_configuration != null ? _configuration.prefix() : "_");
-		return template.generateResponse().contentString().replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&").replace("&quot;", "\"").replace("&apos;", "'").trim();
+		template.setSuperClassPrefix(_resolvedConfiguration != null ? _resolvedConfiguration.prefix() : "_");
+		GeneratedContent content = new GeneratedContent(output, this.streamingThreshold());
+		GeneratorProfiler profiler = template.profiler();
+		if (profiler != null) {
+			profiler.begin(this.templateProfileName(superclass));
+		}
+		try {
+			this.renderComponent(template, content);
+		} finally {
+			if (profiler != null) {
+				profiler.end();
+			}
+		}
+		long startTime = System.nanoTime();
+		if (content.isStreamed()) {
+			// The streamed chunks were unescaped and written while rendering
+			content.close();
+			this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Write);
+			return null;
+		}
+		String generatedFile = StringUtils.unescapeXMLEntities(content.renderedContent()).trim();
+		this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Unescape);
+		return generatedFile;
+	}
+
+	private String templateProfileName(Boolean superclass) {
+		URL templateFileUrl = null;
+		if (_resolvedConfiguration != null) {
+			templateFileUrl = (GeneratorComponent.GenerateSuperclass.equals(superclass) ? _resolvedConfiguration.javaTemplate() : _resolvedConfiguration
+					.subClassJavaTemplate());
+		}
+		if (templateFileUrl == null) {
+			return (GeneratorComponent.GenerateSuperclass.equals(superclass) ? Configuration.JavaTemplateKey : Configuration.SubClassJavaTemplatesKey);
+		}
+		String path = templateFileUrl.getPath();
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * Parses the template of the component, then renders it with the template engine. The time spent is recorded in the statistics.
+	 *
+	 * @param component
+	 * @return rendered content
+	 */
+	protected String renderComponent(GeneratorComponent<?> component) {
+		GeneratorTemplateEngine templateEngine = this.templateEngine();
+		long startTime = System.nanoTime();
+		templateEngine.parseTemplate(component);
+		long parsedTime = System.nanoTime();
+		this.statistics().addTimeForPhase(parsedTime - startTime, GeneratorStatistics.Phase.TemplateParse);
+		String content = templateEngine.renderTemplate(component);
+		this.statistics().addTimeSinceForPhase(parsedTime, GeneratorStatistics.Phase.Render);
+		return content;
+	}
+
+	/**
+	 * Parses the template of the component, then renders it in the content with the template engine. The time spent is recorded in the statistics, the time
+	 * spent streaming the content while it is rendered is recorded as render time.
+	 *
+	 * @param component
+	 * @param content
+	 */
+	protected void renderComponent(GeneratorComponent<?> component, GeneratedContent content) {
+		GeneratorTemplateEngine templateEngine = this.templateEngine();
+		long startTime = System.nanoTime();
+		templateEngine.parseTemplate(component);
+		long parsedTime = System.nanoTime();
+		this.statistics().addTimeForPhase(parsedTime - startTime, GeneratorStatistics.Phase.TemplateParse);
+		templateEngine.renderTemplate(component, content);
+		this.statistics().addTimeSinceForPhase(parsedTime, GeneratorStatistics.Phase.Render);
 	}
 
 	/**
@@ -373,7 +1346,7 @@ public class Generator {
 	 * @return template
 	 */
 	protected String templateForClass(Object targetObject) {
-		URL templateFileUrl = (_configuration != null ? _configuration.javaTemplate() : null);
+		URL templateFileUrl = (_resolvedConfiguration != null ? _resolvedConfiguration.javaTemplate() : null);
 		return (templateFileUrl != null ? this.templateForObject(targetObject, templateFileUrl) : "");
 	}
 
@@ -384,33 +1357,61 @@ public class Generator {
 	 * @return template
 	 */
 	protected String templateForSubClass(Object targetObject) {
-		URL templateFileUrl = (_configuration != null ? _configuration.subClassJavaTemplate() : null);
+		URL templateFileUrl = (_resolvedConfiguration != null ? _resolvedConfiguration.subClassJavaTemplate() : null);
 		return (templateFileUrl != null ? this.templateForObject(targetObject, templateFileUrl) : "");
 	}
 
 	private String templateForObject(Object targetObject, URL templateFileUrl) {
-		StringBuilder template = new StringBuilder();
-		File templateFile = null;
+		String template = "";
 		try {
-			templateFile = new File(templateFileUrl.toURI());
+			template = this.templateLoader().templateForURL(templateFileUrl);
 		} catch (URISyntaxException exception) {
 			this.logStatement("Undefined template: '" + templateFileUrl + "'", true);
+		} catch (NoSuchFileException exception) {
+			this.logStatement("Non existant template: '" + templateFileUrl + "'", true);
+		} catch (IOException exception) {
+			this.logStatement("Error reading template: '" + templateFileUrl + "', " + exception.toString(), true);
+		}
+		return template;
+	}
+
+	/**
+	 * Returns the loader of the template files
+	 *
+	 * @return template loader
+	 */
+	public synchronized GeneratorTemplateLoader templateLoader() {
+		if (_templateLoader == null) {
+			_templateLoader = this.createTemplateLoader();
 		}
-		if (templateFile != null) {
+		return _templateLoader;
+	}
+
+	/**
+	 * Factory method to create a new template loader reading the templates in the template encoding
+	 *
+	 * @return new template loader
+	 */
+	protected GeneratorTemplateLoader createTemplateLoader() {
+		return new GeneratorTemplateLoader(this.charsetForName(_resolvedConfiguration != null ? _resolvedConfiguration.templateEncoding() : null));
+	}
+
+	/**
+	 * Returns the charset for the encoding name, or the platform charset if the encoding is not supported.
+	 *
+	 * @param encoding
+	 * @return charset
+	 */
+	protected Charset charsetForName(String encoding) {
+		Charset charset = Charset.defaultCharset();
+		if ((encoding != null) && (encoding.length() > 0)) {
 			try {
-				BufferedReader in = new BufferedReader(new FileReader(templateFile));
-				try {
-					while (in.ready()) {
-						template.append(in.readLine() + "\n");
-					}
-				} catch (IOException exception) {
-					this.logStatement("Error reading template: '" + templateFileUrl + "', " + exception.toString(), true);
-				}
-			} catch (FileNotFoundException exception) {
-				this.logStatement("Non existant template: '" + templateFileUrl + "'", true);
+				charset = Charset.forName(encoding);
+			} catch (IllegalArgumentException exception) {
+				this.logStatement("Unsupported encoding: '" + encoding + "', using '" + charset + "'", true);
 			}
 		}
-		return template.toString().trim();
+		return charset;
 	}
 
 	/**
@@ -494,19 +1495,49 @@ public class Generator {
 
 	private <T> String generateFilenameForObject(T targetObject, String defaultName, String fileExtension, Boolean superclass) {
 		String filename = "";
-		String filenameTemplate = (_configuration != null ? _configuration.filenameTemplate() : "");
-		if (filenameTemplate.length() > 0) {
+		String filenameTemplate = (_resolvedConfiguration != null ? _resolvedConfiguration.filenameTemplate() : "");
+		CompiledTemplate compiledTemplate = (filenameTemplate.length() > 0 ? this.readOnlyCompiledTemplate(filenameTemplate) : null);
+		if (compiledTemplate != null) {
+			// Renders the compiled template directly with the filename component of the context
+			GeneratorComponent<T> template = this.filenameComponentForTargetObject(targetObject);
+			template.setTargetObject(targetObject);
+			template.setSuperclassGeneration(superclass);
+			template.setSuperClassPrefix(_resolvedConfiguration != null ? _resolvedConfiguration.prefix() : "_");
+			GeneratorProfiler profiler = template.profiler();
+			if (profiler != null) {
+				profiler.begin(Configuration.FileNameTemplateKey);
+			}
+			long startTime = System.nanoTime();
+			try {
+				filename = compiledTemplate.render(template).trim();
+			} finally {
+				if (profiler != null) {
+					profiler.end();
+				}
+			}
+			this.statistics().addTimeSinceForPhase(startTime, GeneratorStatistics.Phase.Render);
+		} else if (filenameTemplate.length() > 0) {
 			GeneratorComponent<T> template = this.componentForTargetObject(targetObject);
 			template.setTargetObject(targetObject);
 			template.setSuperclassGeneration(superclass);
 			template.setTemplateString(filenameTemplate);
-			template.setSuperClassPrefix(_configuration != null ? _configuration.prefix() : "_");
-			filename = template.generateResponse().contentString().trim();
+			template.setSuperClassPrefix(_resolvedConfiguration != null ? _resolvedConfiguration.prefix() : "_");
+			GeneratorProfiler profiler = template.profiler();
+			if (profiler != null) {
+				profiler.begin(Configuration.FileNameTemplateKey);
+			}
+			try {
+				filename = this.renderComponent(template).trim();
+			} finally {
+				if (profiler != null) {
+					profiler.end();
+				}
+			}
 		} else {
 			if (GeneratorComponent.GenerateSuperclass.equals(superclass)) {
 				String className = this.classNameWithoutPackage(defaultName, fileExtension);
 				String packageName = this.packageName(defaultName, fileExtension);
-				String prefix = (_configuration != null ? _configuration.prefix() : "_");
+				String prefix = (_resolvedConfiguration != null ? _resolvedConfiguration.prefix() : "_");
 				filename = (packageName.length() > 0 ? packageName + "." : "") + prefix + className;
 			} else {
 				filename = defaultName;
@@ -516,6 +1547,41 @@ public class Generator {
 		return filename;
 	}
 
+	/**
+	 * Returns the compiled template for the template string if the compiled template engine renders it and the template does not set any value in the component
+	 *
+	 * @param templateString
+	 * @return compiled template or null
+	 */
+	protected CompiledTemplate readOnlyCompiledTemplate(String templateString) {
+		GeneratorTemplateEngine templateEngine = this.templateEngine();
+		CompiledTemplate template = (templateEngine instanceof CompiledTemplateEngine ? ((CompiledTemplateEngine) templateEngine).templateForString(templateString)
+				: null);
+		return ((template != null) && template.isReadOnly() ? template : null);
+	}
+
+	/**
+	 * Returns the component of the current context rendering the filenames of the target objects of the same class. The components returned by
+	 * componentForTargetObject(Object) only depend on the class of the target object, and a read only template leaves no state in the component, so the
+	 * component is created once per context instead of once per file.
+	 *
+	 * @param <T>
+	 *            Type of the object for the generation
+	 * @param targetObject
+	 * @return filename component
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> GeneratorComponent<T> filenameComponentForTargetObject(T targetObject) {
+		Class<?> targetClass = (targetObject != null ? targetObject.getClass() : Object.class);
+		GeneratorContext aContext = this.context();
+		GeneratorComponent<T> component = (GeneratorComponent<T>) aContext.filenameComponentForClass(targetClass);
+		if (component == null) {
+			component = this.componentForTargetObject(targetObject);
+			aContext.setFilenameComponentForClass(component, targetClass);
+		}
+		return component;
+	}
+
 	/**
 	 * Returns the class name
 	 *
@@ -580,7 +1646,7 @@ public class Generator {
 		}
 		String filenameWithoutPackage = this.classNameWithoutPackage(filename, fileExtension);
 		String packageName = this.packageName(filename, fileExtension).replace('.', '/');
-		boolean packageDirectories = (_configuration != null ? _configuration.packageDirectories().booleanValue() : true);
+		boolean packageDirectories = (_resolvedConfiguration != null ? _resolvedConfiguration.packageDirectories() : true);
 		String qualifiedPath = (packageDirectories && (packageName.length() > 0) ? packageName + "/" : "") + filenameWithoutPackage;
 		if (qualifiedPath.length() > 0) {
 			File targetClass = new File(targetDirectory, qualifiedPath);
@@ -599,7 +1665,7 @@ public class Generator {
 	 * @return class directory url
 	 */
 	protected URL destination() {
-		URL directory = (_configuration != null ? _configuration.destination() : null);
+		URL directory = (_resolvedConfiguration != null ? _resolvedConfiguration.destination() : null);
 		if (directory == null) {
 			try {
 				directory = (new File(System.getProperty("user.dir"))).toURL();
@@ -617,7 +1683,7 @@ public class Generator {
 	 * @return sub class directory url
 	 */
 	protected URL subClassDestination() {
-		URL directory = (_configuration != null ? _configuration.subClassDestination() : null);
+		URL directory = (_resolvedConfiguration != null ? _resolvedConfiguration.subClassDestination() : null);
 		if (directory == null)
 			directory = this.destination();
 		return directory;
@@ -629,7 +1695,61 @@ public class Generator {
 	 * @return true if in verbose mode
 	 */
 	public boolean verbose() {
-		return (_configuration != null ? _configuration.verbose().booleanValue() : false);
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.verbose() : false);
+	}
+
+	/**
+	 * Returns true if the incremental argument was set.
+	 *
+	 * @return true if unchanged objects are skipped
+	 */
+	public boolean incremental() {
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.incremental() : false);
+	}
+
+	/**
+	 * Returns true if the dryrun argument was set.
+	 *
+	 * @return true if the generated files are compared but not written
+	 */
+	public boolean dryRun() {
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.dryRun() : false);
+	}
+
+	/**
+	 * Returns true if the stats argument was set.
+	 *
+	 * @return true if the generation statistics are printed
+	 */
+	public boolean showsStatistics() {
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.statistics() : false);
+	}
+
+	/**
+	 * Returns true if the profile argument was set.
+	 *
+	 * @return true if the rendering of the templates is profiled
+	 */
+	public boolean profiles() {
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.profile().length() > 0 : false);
+	}
+
+	/**
+	 * Returns true if the shard argument was set.
+	 *
+	 * @return true if only a shard of the objects is generated
+	 */
+	public boolean isSharded() {
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.isSharded() : false);
+	}
+
+	/**
+	 * Returns true if the mergeShards argument was set.
+	 *
+	 * @return true if the shards of a generation run are merged instead of generating
+	 */
+	public boolean mergesShards() {
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.mergeShards() > 0 : false);
 	}
 
 	/**
@@ -638,7 +1758,7 @@ public class Generator {
 	 * @return true is help is displayed
 	 */
 	public boolean help() {
-		return (_configuration != null ? _configuration.help().booleanValue() : false);
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.help() : false);
 	}
 
 	/**
@@ -647,7 +1767,7 @@ public class Generator {
 	 * @return true if the version is to be displayed
 	 */
 	public boolean version() {
-		return (_configuration != null ? _configuration.version().booleanValue() : false);
+		return (_resolvedConfiguration != null ? _resolvedConfiguration.version() : false);
 	}
 
 	/**
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.webobjects.foundation.NSForwardException;
+import com.webobjects.foundation.NSKeyValueCoding;
+
+/**
+ * Cache of the accessors used to read the keys bound in the templates, resolved once per class and key instead of on every NSKeyValueCoding lookup.
+ * <p>
+ * A key is read through a method handle when the class has exactly one accessor method for it (key, getKey, isKey, _key, _getKey or _isKey) and that method
+ * is public. A key with no accessor method of any visibility in the class hierarchy and no instance variable is unbound: the object handles it as an unbound
+ * key without the reflective lookup. Any other key is left to NSKeyValueCoding.DefaultImplementation so the lookup rules are unchanged.
+ * </p>
+ */
+public class GeneratorAccessorCache {
+
+	private static final MethodType						AccessorType					= MethodType.methodType(Object.class, Object.class);
+
+	private static final Accessor						DefaultImplementationAccessor	= new DefaultAccessor();
+
+	private static final Accessor						UnboundKeyAccessor				= new UnboundAccessor();
+
+	private ClassValue<ConcurrentMap<String, Accessor>>	_accessors;
+
+	/**
+	 * Reads a key on objects of one class
+	 */
+	public static abstract class Accessor {
+		/**
+		 * Returns the value for the key
+		 *
+		 * @param object
+		 * @param key
+		 * @return value
+		 */
+		public abstract Object valueForKey(Object object, String key);
+	}
+
+	/**
+	 * Accessor calling the accessor method through a method handle
+	 */
+	static class MethodAccessor extends Accessor {
+		MethodHandle	_handle;
+
+		MethodAccessor(MethodHandle handle) {
+			_handle = handle;
+		}
+
+		@Override
+		public Object valueForKey(Object object, String key) {
+			try {
+				return _handle.invokeExact(object);
+			} catch (RuntimeException exception) {
+				throw exception;
+			} catch (Error error) {
+				throw error;
+			} catch (Throwable exception) {
+				throw new NSForwardException(exception);
+			}
+		}
+	}
+
+	/**
+	 * Accessor delegating to NSKeyValueCoding.DefaultImplementation
+	 */
+	static class DefaultAccessor extends Accessor {
+		@Override
+		public Object valueForKey(Object object, String key) {
+			return NSKeyValueCoding.DefaultImplementation.valueForKey(object, key);
+		}
+	}
+
+	/**
+	 * Accessor for a key the class does not define
+	 */
+	static class UnboundAccessor extends Accessor {
+		@Override
+		public Object valueForKey(Object object, String key) {
+			if (object instanceof NSKeyValueCoding.ErrorHandling) {
+				return ((NSKeyValueCoding.ErrorHandling) object).handleQueryWithUnboundKey(key);
+			}
+			return NSKeyValueCoding.DefaultImplementation.handleQueryWithUnboundKey(object, key);
+		}
+	}
+
+	/**
+	 * Sole constructor
+	 */
+	public GeneratorAccessorCache() {
+		super();
+		_accessors = new ClassValue<ConcurrentMap<String, Accessor>>() {
+			@Override
+			protected ConcurrentMap<String, Accessor> computeValue(Class<?> aClass) {
+				return new ConcurrentHashMap<String, Accessor>();
+			}
+		};
+	}
+
+	/**
+	 * Returns the value for the key, as NSKeyValueCoding.DefaultImplementation.valueForKey(Object, String) does.
+	 *
+	 * @param object
+	 * @param key
+	 * @return value
+	 */
+	public Object valueForKey(Object object, String key) {
+		return this.accessorForKey(object.getClass(), key).valueForKey(object, key);
+	}
+
+	/**
+	 * Returns the accessor for the key on objects of the class, resolving it on the first request.
+	 *
+	 * @param aClass
+	 * @param key
+	 * @return accessor
+	 */
+	public Accessor accessorForKey(Class<?> aClass, String key) {
+		ConcurrentMap<String, Accessor> accessors = _accessors.get(aClass);
+		Accessor accessor = accessors.get(key);
+		if (accessor == null) {
+			accessor = this.resolveAccessorForKey(aClass, key);
+			accessors.putIfAbsent(key, accessor);
+		}
+		return accessor;
+	}
+
+	/**
+	 * Checks if objects of the class define the key
+	 *
+	 * @param aClass
+	 * @param key
+	 * @return false if the key is unbound
+	 */
+	public boolean isBoundKey(Class<?> aClass, String key) {
+		return this.accessorForKey(aClass, key) != UnboundKeyAccessor;
+	}
+
+	/**
+	 * Resolves the accessor for the key
+	 *
+	 * @param aClass
+	 * @param key
+	 * @return accessor
+	 */
+	protected Accessor resolveAccessorForKey(Class<?> aClass, String key) {
+		if ((key == null) || (key.length() == 0)) {
+			return DefaultImplementationAccessor;
+		}
+		String capitalizedKey = Character.toUpperCase(key.charAt(0)) + key.substring(1);
+		String[] accessorNames = new String[] { key, "get" + capitalizedKey, "is" + capitalizedKey, "_" + key, "_get" + capitalizedKey, "_is" + capitalizedKey };
+		int declaredCount = this.declaredAccessorCount(aClass, accessorNames);
+		Method accessorMethod = null;
+		int count = 0;
+		for (String name : accessorNames) {
+			try {
+				accessorMethod = aClass.getMethod(name);
+				count++;
+			} catch (NoSuchMethodException exception) {
+				// Not an accessor name for this class
+			}
+		}
+		if ((count == 0) && (declaredCount == 0)) {
+			return (this.hasFieldForKey(aClass, key, capitalizedKey) ? DefaultImplementationAccessor : UnboundKeyAccessor);
+		}
+		// A non-public accessor is still found by NSKeyValueCoding.DefaultImplementation, and may take precedence over the public one
+		if ((count != 1) || (declaredCount > 1) || (accessorMethod.getReturnType() == Void.TYPE) || Modifier.isStatic(accessorMethod.getModifiers())) {
+			return DefaultImplementationAccessor;
+		}
+		try {
+			return new MethodAccessor(MethodHandles.publicLookup().unreflect(accessorMethod).asType(AccessorType));
+		} catch (IllegalAccessException exception) {
+			// The method is declared in a class that is not public
+			return DefaultImplementationAccessor;
+		}
+	}
+
+	private int declaredAccessorCount(Class<?> aClass, String[] accessorNames) {
+		Set<String> declaredNames = new HashSet<String>();
+		for (Class<?> aSuperclass = aClass; aSuperclass != null; aSuperclass = aSuperclass.getSuperclass()) {
+			for (Method aMethod : aSuperclass.getDeclaredMethods()) {
+				if (aMethod.getParameterTypes().length == 0) {
+					for (String name : accessorNames) {
+						if (name.equals(aMethod.getName())) {
+							declaredNames.add(name);
+						}
+					}
+				}
+			}
+		}
+		return declaredNames.size();
+	}
+
+	private boolean hasFieldForKey(Class<?> aClass, String key, String capitalizedKey) {
+		for (Class<?> aSuperclass = aClass; aSuperclass != null; aSuperclass = aSuperclass.getSuperclass()) {
+			for (Field aField : aSuperclass.getDeclaredFields()) {
+				String name = aField.getName();
+				if (name.equals(key) || name.equals("_" + key) || name.equals("is" + capitalizedKey) || name.equals("_is" + capitalizedKey)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+}
@@ -12,11 +12,9 @@
  */
 package com.webobjects.generator;
 
-import com.webobjects.appserver.WOApplication;
 import com.webobjects.appserver.WOComponent;
 import com.webobjects.appserver.WOElement;
 import com.webobjects.appserver._private.WOComponentDefinition;
-import com.webobjects.appserver.parser.WOComponentTemplateParser;
 
 /**
  * @param <T>
@@ -64,6 +62,16 @@ public class GeneratorComponent<T> extends WOComponent {
 		return (GeneratorContext) super.context();
 	}
 
+	/**
+	 * Returns the profiler recording the rendering of the template
+	 *
+	 * @return profiler or null if the template is not profiled
+	 */
+	public GeneratorProfiler profiler() {
+		GeneratorContext aContext = this.generatorContext();
+		return (aContext != null ? aContext.profiler() : null);
+	}
+
 	/**
 	 * @return the targetObject
 	 */
@@ -131,6 +139,25 @@ public class GeneratorComponent<T> extends WOComponent {
 		this._superClassPrefix = superClassPrefix;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.webobjects.appserver.WOComponent#valueForKeyPath(java.lang.String)
+	 */
+	@Override
+	public Object valueForKeyPath(String keyPath) {
+		GeneratorProfiler profiler = this.profiler();
+		if (profiler == null) {
+			return super.valueForKeyPath(keyPath);
+		}
+		profiler.begin("[" + keyPath + "]");
+		try {
+			return super.valueForKeyPath(keyPath);
+		} finally {
+			profiler.end();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -140,7 +167,7 @@ public class GeneratorComponent<T> extends WOComponent {
 	public Object handleQueryWithUnboundKey(String key) {
 		Object value = null;
 		if (key != null) {
-			value = this.generatorContext().configuration().valueForAdditionalKey(key);
+			value = this.generatorContext().resolvedConfiguration().valueForAdditionalKey(key);
 		}
 		if (value == null) {
 			value = this.generatorContext().localVariableForKey(key);
@@ -207,12 +234,7 @@ public class GeneratorComponent<T> extends WOComponent {
 	public WOElement template() {
 		if (_template == null) {
 			if (this.templateString().length() > 0) {
-				try {
-					_template = WOComponentTemplateParser.templateWithHTMLAndDeclaration("Template", this.templateString(), "", null, WOApplication.application().associationFactory(), WOApplication
-							.application().namespaceProvider());
-				} catch (Exception exception) {/**/
-					exception.printStackTrace();
-				}
+				_template = this.generatorContext().templateCache().templateForString(this.templateString());
 			}
 		}
 		return _template;
@@ -13,6 +13,7 @@
 package com.webobjects.generator;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -23,9 +24,17 @@ import com.webobjects.appserver.WOContext;
  */
 public class GeneratorContext extends WOContext {
 
-	Configuration		_configuration;
+	Configuration							_configuration;
 
-	Map<String, Object>	_localVariables;
+	ResolvedConfiguration					_resolvedConfiguration;
+
+	Map<String, Object>						_localVariables;
+
+	GeneratorTemplateCache					_templateCache;
+
+	Map<Class<?>, GeneratorComponent<?>>	_filenameComponents;
+
+	GeneratorProfiler						_profiler;
 
 	/**
 	 * @param configuration
@@ -33,7 +42,9 @@ public class GeneratorContext extends WOContext {
 	public GeneratorContext(Configuration configuration) {
 		super(null);
 		_configuration = configuration;
+		_resolvedConfiguration = (configuration != null ? configuration.resolvedConfiguration() : null);
 		_localVariables = new TreeMap<String, Object>();
+		_filenameComponents = new HashMap<Class<?>, GeneratorComponent<?>>();
 	}
 
 	/**
@@ -45,6 +56,15 @@ public class GeneratorContext extends WOContext {
 		return this._configuration;
 	}
 
+	/**
+	 * Returns the option values of the configuration for this context
+	 *
+	 * @return the resolved configuration
+	 */
+	public ResolvedConfiguration resolvedConfiguration() {
+		return this._resolvedConfiguration;
+	}
+
 	/**
 	 * Return a dictionary of local variables
 	 *
@@ -75,4 +95,64 @@ public class GeneratorContext extends WOContext {
 		_localVariables.put(key, localVariable);
 	}
 
+	/**
+	 * Returns the cache of parsed templates used by the components of this context
+	 *
+	 * @return template cache
+	 */
+	public GeneratorTemplateCache templateCache() {
+		if (_templateCache == null) {
+			_templateCache = new GeneratorTemplateCache();
+		}
+		return _templateCache;
+	}
+
+	/**
+	 * Sets the cache of parsed templates. Contexts of the same generation run share the same cache.
+	 *
+	 * @param templateCache
+	 */
+	public void setTemplateCache(GeneratorTemplateCache templateCache) {
+		_templateCache = templateCache;
+	}
+
+	/**
+	 * Returns the profiler recording the rendering of the templates in this context
+	 *
+	 * @return profiler or null if the templates are not profiled
+	 */
+	public GeneratorProfiler profiler() {
+		return _profiler;
+	}
+
+	/**
+	 * Sets the profiler recording the rendering of the templates. Contexts of the same generation run share the same profiler.
+	 *
+	 * @param profiler
+	 *            profiler or null to not profile the templates
+	 */
+	public void setProfiler(GeneratorProfiler profiler) {
+		_profiler = profiler;
+	}
+
+	/**
+	 * Returns the component rendering the filenames of the target objects of the class in this context
+	 *
+	 * @param targetClass
+	 * @return filename component or null
+	 */
+	public GeneratorComponent<?> filenameComponentForClass(Class<?> targetClass) {
+		return _filenameComponents.get(targetClass);
+	}
+
+	/**
+	 * Sets the component rendering the filenames of the target objects of the class in this context
+	 *
+	 * @param component
+	 * @param targetClass
+	 */
+	public void setFilenameComponentForClass(GeneratorComponent<?> component, Class<?> targetClass) {
+		_filenameComponents.put(targetClass, component);
+	}
+
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Files a dry run would create, change or leave unchanged. A dry run renders and compares every file like a generation, but records the file in the report
+ * instead of writing it. Files can be recorded by concurrent generations.
+ * <p>
+ * The report lists one line per file, the status, the size difference in bytes and the path separated by tabs, or a JSON document.
+ * </p>
+ */
+public class GeneratorDryRunReport {
+
+	/**
+	 * Status of a file after the generation
+	 */
+	public static enum Status {
+		/**
+		 * The file does not exist and would be created
+		 */
+		Created,
+		/**
+		 * The file exists and would be written with a different content
+		 */
+		Changed,
+		/**
+		 * The file exists and would not be written
+		 */
+		Unchanged;
+
+		/**
+		 * @return status name in the report
+		 */
+		public String label() {
+			return this.name().toLowerCase(Locale.US);
+		}
+	}
+
+	/**
+	 * One file of the report
+	 */
+	public static class Entry {
+		Status	_status;
+
+		String	_path;
+
+		long	_delta;
+
+		/**
+		 * @param status
+		 * @param path
+		 * @param delta
+		 *            size of the generated file minus the size of the existing file, in bytes
+		 */
+		public Entry(Status status, String path, long delta) {
+			super();
+			_status = status;
+			_path = path;
+			_delta = delta;
+		}
+
+		/**
+		 * @return status of the file
+		 */
+		public Status status() {
+			return _status;
+		}
+
+		/**
+		 * @return absolute path of the file
+		 */
+		public String path() {
+			return _path;
+		}
+
+		/**
+		 * @return size of the generated file minus the size of the existing file, in bytes
+		 */
+		public long delta() {
+			return _delta;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return _status.label() + "\t" + (_delta > 0 ? "+" : "") + _delta + "\t" + _path;
+		}
+	}
+
+	private static final Charset	UTF8	= Charset.forName("UTF-8");
+
+	private Charset					_charset;
+
+	private Map<String, Entry>		_entries;
+
+	/**
+	 * @param charset
+	 *            encoding of the generated files
+	 */
+	public GeneratorDryRunReport(Charset charset) {
+		super();
+		_charset = (charset != null ? charset : Charset.defaultCharset());
+		_entries = new TreeMap<String, Entry>();
+	}
+
+	/**
+	 * Records a file the generation would write: created if it does not exist, changed otherwise.
+	 *
+	 * @param generatedContent
+	 * @param aFile
+	 */
+	public void recordGeneratedFile(String generatedContent, File aFile) {
+		this.recordGeneratedFile(generatedContent.getBytes(_charset).length, aFile);
+	}
+
+	/**
+	 * Records a file of the size the generation would write: created if it does not exist, changed otherwise.
+	 *
+	 * @param size
+	 *            size of the generated file in bytes
+	 * @param aFile
+	 */
+	public void recordGeneratedFile(long size, File aFile) {
+		if (aFile.isFile()) {
+			this.recordFile(Status.Changed, aFile, size - aFile.length());
+		} else {
+			this.recordFile(Status.Created, aFile, size);
+		}
+	}
+
+	/**
+	 * Records a file the generation would leave unchanged
+	 *
+	 * @param aFile
+	 */
+	public void recordUnchangedFile(File aFile) {
+		this.recordFile(Status.Unchanged, aFile, 0);
+	}
+
+	private synchronized void recordFile(Status status, File aFile, long delta) {
+		String path = aFile.getAbsolutePath();
+		_entries.put(path, new Entry(status, path, delta));
+	}
+
+	/**
+	 * Returns the recorded files sorted by path
+	 *
+	 * @return entry list
+	 */
+	public synchronized List<Entry> entries() {
+		return new ArrayList<Entry>(_entries.values());
+	}
+
+	/**
+	 * Returns the number of files with the status
+	 *
+	 * @param status
+	 * @return number of files
+	 */
+	public synchronized int countForStatus(Status status) {
+		int count = 0;
+		for (Entry anEntry : _entries.values()) {
+			if (anEntry.status() == status) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns true if the generation would create or change files
+	 *
+	 * @return true if the generated files are not current
+	 */
+	public boolean hasChanges() {
+		return (this.countForStatus(Status.Created) + this.countForStatus(Status.Changed)) > 0;
+	}
+
+	/**
+	 * Returns the files that would be created or changed, one per line, followed by the number of files of each status
+	 *
+	 * @return summary
+	 */
+	public String summary() {
+		StringBuilder summary = new StringBuilder();
+		for (Entry anEntry : this.entries()) {
+			if (anEntry.status() != Status.Unchanged) {
+				summary.append(anEntry).append('\n');
+			}
+		}
+		summary.append("Dry run: ").append(this.countForStatus(Status.Created)).append(" files would be created, ");
+		summary.append(this.countForStatus(Status.Changed)).append(" changed, ");
+		summary.append(this.countForStatus(Status.Unchanged)).append(" unchanged");
+		return summary.toString();
+	}
+
+	/**
+	 * Returns the report as a JSON document
+	 *
+	 * @return JSON document
+	 */
+	public String toJSON() {
+		StringBuilder json = new StringBuilder();
+		List<Entry> entries = this.entries();
+		for (Status status : Status.values()) {
+			json.append(status.ordinal() > 0 ? ",\n  \"" : "{\n  \"").append(status.label()).append("\": ").append(this.countForStatus(status));
+		}
+		json.append(",\n  \"files\": [");
+		for (int index = 0; index < entries.size(); index++) {
+			Entry anEntry = entries.get(index);
+			json.append(index > 0 ? "," : "").append("\n    { \"status\": \"").append(anEntry.status().label()).append("\", \"delta\": ").append(anEntry.delta());
+			json.append(", \"path\": ");
+			GeneratorStatistics.appendJSONString(anEntry.path(), json);
+			json.append(" }");
+		}
+		json.append("\n  ]\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Writes the report to the file: a JSON document if the file name ends with .json, one line per file otherwise.
+	 *
+	 * @param aFile
+	 * @throws IOException
+	 */
+	public void write(File aFile) throws IOException {
+		try (Writer out = Files.newBufferedWriter(aFile.toPath(), UTF8)) {
+			if (aFile.getName().endsWith(".json")) {
+				out.write(this.toJSON());
+			} else {
+				for (Entry anEntry : this.entries()) {
+					out.write(anEntry.toString());
+					out.write('\n');
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " created: " + this.countForStatus(Status.Created) + " changed: " + this.countForStatus(Status.Changed)
+				+ " unchanged: " + this.countForStatus(Status.Unchanged) + " >";
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches directories for created, modified and deleted files. Changes are reported in batches: a batch ends when no change happened during the quiet period, so
+ * an editor saving several files, or writing a file in several steps, causes one regeneration.
+ */
+public class GeneratorFileWatcher implements Closeable {
+
+	private WatchService		_watchService;
+
+	private Map<WatchKey, Path>	_directories;
+
+	/**
+	 * @throws IOException
+	 *             if the file system cannot be watched
+	 */
+	public GeneratorFileWatcher() throws IOException {
+		super();
+		_watchService = FileSystems.getDefault().newWatchService();
+		_directories = new ConcurrentHashMap<WatchKey, Path>();
+	}
+
+	/**
+	 * Watches the files of the directory. Sub directories are not watched.
+	 *
+	 * @param directory
+	 * @throws IOException
+	 */
+	public void watchDirectory(Path directory) throws IOException {
+		Path absoluteDirectory = directory.toAbsolutePath().normalize();
+		if (!_directories.containsValue(absoluteDirectory)) {
+			WatchKey aKey = absoluteDirectory.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+			_directories.put(aKey, absoluteDirectory);
+		}
+	}
+
+	/**
+	 * Returns the watched directories
+	 *
+	 * @return directories
+	 */
+	public Set<Path> directories() {
+		return new TreeSet<Path>(_directories.values());
+	}
+
+	/**
+	 * Waits for changes in the watched directories.
+	 *
+	 * @param quietPeriod
+	 *            time without change that ends the batch, in milliseconds
+	 * @return absolute paths of the changed files, or of the directory itself when its events were lost
+	 * @throws InterruptedException
+	 */
+	public Set<Path> awaitChanges(long quietPeriod) throws InterruptedException {
+		Set<Path> changes = new TreeSet<Path>();
+		WatchKey aKey = _watchService.take();
+		while (aKey != null) {
+			Path directory = _directories.get(aKey);
+			if (directory != null) {
+				for (WatchEvent<?> anEvent : aKey.pollEvents()) {
+					if (anEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+						changes.add(directory);
+					} else {
+						changes.add(directory.resolve((Path) anEvent.context()));
+					}
+				}
+			}
+			if (!aKey.reset()) {
+				// The directory was deleted
+				_directories.remove(aKey);
+				if (directory != null) {
+					changes.add(directory);
+				}
+			}
+			aKey = _watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+		}
+		return changes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException {
+		_watchService.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " directories: " + this.directories() + " >";
+	}
+
+}
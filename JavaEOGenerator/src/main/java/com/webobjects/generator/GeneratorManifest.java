@@ -0,0 +1,363 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Persistent record of the generated objects. For each object the manifest keeps a fingerprint of everything the generation depends on and the files that were
+ * generated, so an object whose fingerprint did not change since the last run does not need to be generated again.
+ * <p>
+ * The manifest is a text file with one line per object: the key, the fingerprint and the generated file paths separated by tabs. The manifest of a shard also
+ * lists the keys of the objects in the partition of the shard, so the objects it removed can be removed from the merged manifest.
+ * </p>
+ */
+public class GeneratorManifest {
+
+	/**
+	 * Default manifest file name
+	 */
+	public static final String			ManifestFileName	= ".eogenerator.manifest";
+
+	private static final String			Header				= "# JavaEOGenerator manifest";
+
+	private static final Charset		UTF8				= Charset.forName("UTF-8");
+
+	private static final String			LineSeparator		= System.getProperty("line.separator");
+
+	private static final String			PartitionPrefix		= "#partition\t";
+
+	private File						_file;
+
+	private Map<String, Entry>			_entries;
+
+	private Set<String>					_partitionKeys;
+
+	private boolean						_changed;
+
+	/**
+	 * One object of the manifest
+	 */
+	public static class Entry {
+		String			_fingerprint;
+
+		List<String>	_files;
+
+		/**
+		 * @param fingerprint
+		 * @param files
+		 */
+		public Entry(String fingerprint, List<String> files) {
+			super();
+			_fingerprint = fingerprint;
+			_files = Collections.unmodifiableList(new ArrayList<String>(files));
+		}
+
+		/**
+		 * @return fingerprint of the object
+		 */
+		public String fingerprint() {
+			return _fingerprint;
+		}
+
+		/**
+		 * @return paths of the generated files
+		 */
+		public List<String> files() {
+			return _files;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object anObject) {
+			if (!(anObject instanceof Entry)) {
+				return false;
+			}
+			Entry anEntry = (Entry) anObject;
+			return _fingerprint.equals(anEntry._fingerprint) && _files.equals(anEntry._files);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return _fingerprint.hashCode();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "<" + this.getClass().getName() + " fingerprint: '" + _fingerprint + "' files: " + _files + " >";
+		}
+	}
+
+	/**
+	 * @param file
+	 *            manifest file
+	 */
+	public GeneratorManifest(File file) {
+		super();
+		_file = file;
+		_entries = new TreeMap<String, Entry>();
+		_partitionKeys = new TreeSet<String>();
+	}
+
+	/**
+	 * Returns the manifest file
+	 *
+	 * @return manifest file
+	 */
+	public File file() {
+		return _file;
+	}
+
+	/**
+	 * Reads the manifest file if it exists, replacing the current entries.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void load() throws IOException {
+		this.load(_file);
+	}
+
+	/**
+	 * Reads the entries from another manifest file if it exists, replacing the current entries. The entries are saved to the file of this manifest, a shard of
+	 * the generation loads the manifest of the whole generation and saves its own.
+	 *
+	 * @param aFile
+	 *            manifest file to read
+	 * @throws IOException
+	 */
+	public synchronized void load(File aFile) throws IOException {
+		_entries.clear();
+		_partitionKeys.clear();
+		_changed = (aFile != null) && !aFile.equals(_file);
+		if ((aFile != null) && aFile.exists()) {
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(aFile), UTF8))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.startsWith(PartitionPrefix)) {
+						_partitionKeys.add(line.substring(PartitionPrefix.length()));
+					} else if ((line.length() > 0) && !line.startsWith("#")) {
+						String[] fields = line.split("\t");
+						if (fields.length >= 2) {
+							List<String> files = new ArrayList<String>();
+							for (int index = 2; index < fields.length; index++) {
+								files.add(fields[index]);
+							}
+							_entries.put(fields[0], new Entry(fields[1], files));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the manifest file if an entry changed since it was loaded. The file is written to a temporary file then moved in place, so an interrupted
+	 * generation leaves the last complete manifest.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if (_changed && (_file != null)) {
+			StringBuilder content = new StringBuilder();
+			content.append(Header).append(LineSeparator);
+			for (String key : _partitionKeys) {
+				content.append(PartitionPrefix).append(key).append(LineSeparator);
+			}
+			for (Map.Entry<String, Entry> anEntry : _entries.entrySet()) {
+				content.append(anEntry.getKey());
+				content.append('\t');
+				content.append(anEntry.getValue().fingerprint());
+				for (String path : anEntry.getValue().files()) {
+					content.append('\t');
+					content.append(path);
+				}
+				content.append(LineSeparator);
+			}
+			new GeneratedFileWriter(UTF8).write(content.toString(), _file);
+			_changed = false;
+		}
+	}
+
+	/**
+	 * Returns the entry for the key
+	 *
+	 * @param key
+	 * @return entry or null if the object is not in the manifest
+	 */
+	public synchronized Entry entryForKey(String key) {
+		return _entries.get(key);
+	}
+
+	/**
+	 * Returns all the entries by key
+	 *
+	 * @return map of entries, the returned map is immutable
+	 */
+	public synchronized Map<String, Entry> entries() {
+		return Collections.unmodifiableMap(new TreeMap<String, Entry>(_entries));
+	}
+
+	/**
+	 * Records the fingerprint and generated files of the object
+	 *
+	 * @param fingerprint
+	 * @param files
+	 * @param key
+	 */
+	public synchronized void setEntryForKey(String fingerprint, List<String> files, String key) {
+		_entries.put(key, new Entry(fingerprint, files));
+		_changed = true;
+	}
+
+	/**
+	 * Removes the object from the manifest
+	 *
+	 * @param key
+	 */
+	public synchronized void removeEntryForKey(String key) {
+		if (_entries.remove(key) != null) {
+			_changed = true;
+		}
+	}
+
+	/**
+	 * Records that the object is in the partition of the shard saving this manifest
+	 *
+	 * @param key
+	 */
+	public synchronized void recordPartitionKey(String key) {
+		if (_partitionKeys.add(key)) {
+			_changed = true;
+		}
+	}
+
+	/**
+	 * Returns the keys of the objects in the partition of the shard that saved this manifest
+	 *
+	 * @return sorted keys, the returned set is immutable
+	 */
+	public synchronized Set<String> partitionKeys() {
+		return Collections.unmodifiableSet(new TreeSet<String>(_partitionKeys));
+	}
+
+	/**
+	 * Merges the entries a shard of the generation changed. Every shard starts from the same entries and saves all of them, so the entries of the shard manifest
+	 * that differ from the entries the shards started from are the objects the shard generated. An entry the shards started from that is in the partition of the
+	 * shard but no longer in its manifest was removed by the shard.
+	 *
+	 * @param shardManifest
+	 *            manifest saved by the shard
+	 * @param initialEntries
+	 *            entries the shards started from
+	 * @return number of merged entries, changed or removed
+	 */
+	public synchronized int mergeChangedEntries(GeneratorManifest shardManifest, Map<String, Entry> initialEntries) {
+		int count = 0;
+		Map<String, Entry> shardEntries = shardManifest.entries();
+		for (Map.Entry<String, Entry> anEntry : shardEntries.entrySet()) {
+			if (!anEntry.getValue().equals(initialEntries.get(anEntry.getKey()))) {
+				_entries.put(anEntry.getKey(), anEntry.getValue());
+				_changed = true;
+				count++;
+			}
+		}
+		for (String key : shardManifest.partitionKeys()) {
+			if (initialEntries.containsKey(key) && !shardEntries.containsKey(key) && (_entries.remove(key) != null)) {
+				_changed = true;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if the object was generated with the same fingerprint and all its generated files still exist.
+	 *
+	 * @param fingerprint
+	 * @param key
+	 * @return true if the object does not need to be generated
+	 */
+	public synchronized boolean isUpToDate(String fingerprint, String key) {
+		Entry anEntry = _entries.get(key);
+		if ((anEntry == null) || (fingerprint == null) || !fingerprint.equals(anEntry.fingerprint())) {
+			return false;
+		}
+		for (String path : anEntry.files()) {
+			if (!new File(path).exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-1 digest of the description
+	 *
+	 * @param description
+	 * @return fingerprint
+	 */
+	public static String fingerprint(CharSequence description) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(description.toString().getBytes(UTF8));
+			StringBuilder result = new StringBuilder(hash.length * 2);
+			for (byte aByte : hash) {
+				result.append(Character.forDigit((aByte >> 4) & 0xF, 16));
+				result.append(Character.forDigit(aByte & 0xF, 16));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException exception) {
+			// Every Java platform is required to support SHA-1
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " file: '" + _file + "' entries: " + _entries.size() + " >";
+	}
+
+}
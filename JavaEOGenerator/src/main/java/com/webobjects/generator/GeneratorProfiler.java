@@ -0,0 +1,333 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Profile of the rendering of the templates. The time spent in each frame, a template, an element or a binding key path, is recorded with the frames it is
+ * nested in, so the same element is profiled separately in each template and repetition it appears in. Each thread records its own call tree, the trees are
+ * merged when the profile is reported.
+ * <p>
+ * The profile is written in the collapsed stack format read by the flame graph tools: one line per stack, the frames separated by semicolons followed by the
+ * self time of the innermost frame in nanoseconds.
+ * </p>
+ */
+public class GeneratorProfiler {
+
+	/**
+	 * Frame of a call tree, the same frame records all the calls with the same stack
+	 */
+	static class Frame {
+		String				_name;
+
+		Frame				_parent;
+
+		Map<String, Frame>	_children;
+
+		long				_count;
+
+		long				_totalTime;
+
+		long				_childTime;
+
+		long				_startTime;
+
+		Frame(String name, Frame parent) {
+			_name = name;
+			_parent = parent;
+			_children = new LinkedHashMap<String, Frame>();
+		}
+
+		Frame child(String name) {
+			Frame aFrame = _children.get(name);
+			if (aFrame == null) {
+				aFrame = new Frame(name, this);
+				_children.put(name, aFrame);
+			}
+			return aFrame;
+		}
+
+		long selfTime() {
+			return _totalTime - _childTime;
+		}
+	}
+
+	/**
+	 * Times of the frames with the same name, wherever they are called
+	 */
+	public static class FrameStatistics {
+		String	_name;
+
+		long	_count;
+
+		long	_totalTime;
+
+		long	_selfTime;
+
+		FrameStatistics(String name) {
+			_name = name;
+		}
+
+		/**
+		 * @return name of the frame
+		 */
+		public String name() {
+			return _name;
+		}
+
+		/**
+		 * @return number of calls
+		 */
+		public long count() {
+			return _count;
+		}
+
+		/**
+		 * @return time spent in the frame and the frames it called, in nanoseconds, without counting twice the recursive calls
+		 */
+		public long totalTime() {
+			return _totalTime;
+		}
+
+		/**
+		 * @return time spent in the frame itself, in nanoseconds
+		 */
+		public long selfTime() {
+			return _selfTime;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "<" + this.getClass().getName() + " name: '" + _name + "' count: " + _count + " self: " + _selfTime + "ns >";
+		}
+	}
+
+	private static final Charset	UTF8	= Charset.forName("UTF-8");
+
+	private List<Frame>				_roots;
+
+	private ThreadLocal<Frame>		_currentFrame;
+
+	/**
+	 * Sole constructor
+	 */
+	public GeneratorProfiler() {
+		super();
+		_roots = Collections.synchronizedList(new ArrayList<Frame>());
+		_currentFrame = new ThreadLocal<Frame>();
+	}
+
+	/**
+	 * Enters a frame called from the current frame of the current thread. Each call must be balanced by a call to end(), in a finally block.
+	 *
+	 * @param name
+	 *            name of the frame in the reports
+	 */
+	public void begin(String name) {
+		Frame current = _currentFrame.get();
+		if (current == null) {
+			current = new Frame(null, null);
+			_roots.add(current);
+		}
+		Frame aFrame = current.child(name);
+		_currentFrame.set(aFrame);
+		aFrame._startTime = System.nanoTime();
+	}
+
+	/**
+	 * Leaves the current frame of the current thread, and adds the time spent since begin(String) to it
+	 */
+	public void end() {
+		long endTime = System.nanoTime();
+		Frame aFrame = _currentFrame.get();
+		if ((aFrame == null) || (aFrame._parent == null)) {
+			throw new IllegalStateException("No frame to end");
+		}
+		long time = endTime - aFrame._startTime;
+		aFrame._count++;
+		aFrame._totalTime += time;
+		aFrame._parent._childTime += time;
+		_currentFrame.set(aFrame._parent);
+	}
+
+	/**
+	 * Returns the stacks recorded by all the threads, the same stack recorded by several threads is merged
+	 *
+	 * @return self time in nanoseconds and number of calls by collapsed stack
+	 */
+	public Map<String, long[]> collapsedStacks() {
+		Map<String, long[]> stacks = new TreeMap<String, long[]>();
+		for (Frame aRoot : this.roots()) {
+			for (Frame aFrame : aRoot._children.values()) {
+				this.collectStacks(aFrame, "", stacks);
+			}
+		}
+		return stacks;
+	}
+
+	private void collectStacks(Frame aFrame, String prefix, Map<String, long[]> stacks) {
+		String stack = prefix + frameName(aFrame._name);
+		long[] values = stacks.get(stack);
+		if (values == null) {
+			values = new long[2];
+			stacks.put(stack, values);
+		}
+		values[0] += aFrame.selfTime();
+		values[1] += aFrame._count;
+		for (Frame aChild : aFrame._children.values()) {
+			this.collectStacks(aChild, stack + ";", stacks);
+		}
+	}
+
+	/**
+	 * Returns the times of the frames, merged by name
+	 *
+	 * @return frame statistics, by decreasing self time
+	 */
+	public List<FrameStatistics> frameStatistics() {
+		Map<String, FrameStatistics> statistics = new HashMap<String, FrameStatistics>();
+		for (Frame aRoot : this.roots()) {
+			for (Frame aFrame : aRoot._children.values()) {
+				this.collectFrameStatistics(aFrame, new HashSet<String>(), statistics);
+			}
+		}
+		List<FrameStatistics> frames = new ArrayList<FrameStatistics>(statistics.values());
+		Collections.sort(frames, new Comparator<FrameStatistics>() {
+			public int compare(FrameStatistics o1, FrameStatistics o2) {
+				return Long.compare(o2.selfTime(), o1.selfTime());
+			}
+		});
+		return frames;
+	}
+
+	private void collectFrameStatistics(Frame aFrame, Set<String> callers, Map<String, FrameStatistics> statistics) {
+		FrameStatistics frameStatistics = statistics.get(aFrame._name);
+		if (frameStatistics == null) {
+			frameStatistics = new FrameStatistics(aFrame._name);
+			statistics.put(aFrame._name, frameStatistics);
+		}
+		frameStatistics._count += aFrame._count;
+		frameStatistics._selfTime += aFrame.selfTime();
+		boolean recursive = !callers.add(aFrame._name);
+		if (!recursive) {
+			frameStatistics._totalTime += aFrame._totalTime;
+		}
+		for (Frame aChild : aFrame._children.values()) {
+			this.collectFrameStatistics(aChild, callers, statistics);
+		}
+		if (!recursive) {
+			callers.remove(aFrame._name);
+		}
+	}
+
+	private List<Frame> roots() {
+		synchronized (_roots) {
+			return new ArrayList<Frame>(_roots);
+		}
+	}
+
+	/**
+	 * @return true if no frame was recorded
+	 */
+	public boolean isEmpty() {
+		for (Frame aRoot : this.roots()) {
+			if (aRoot._children.size() > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a human readable summary of the frames with the most self time
+	 *
+	 * @param count
+	 *            number of frames to list
+	 * @return summary
+	 */
+	public String summary(int count) {
+		StringBuilder summary = new StringBuilder();
+		summary.append("Template profile\n");
+		summary.append(String.format(Locale.US, "  %-60s %12s %12s %10s%n", "Frame", "Self (ms)", "Total (ms)", "Count"));
+		List<FrameStatistics> frames = this.frameStatistics();
+		for (int index = 0; index < Math.min(count, frames.size()); index++) {
+			FrameStatistics aFrame = frames.get(index);
+			summary.append(String.format(Locale.US, "  %-60s %12.2f %12.2f %10d%n", aFrame.name(), milliseconds(aFrame.selfTime()), milliseconds(aFrame.totalTime()),
+					Long.valueOf(aFrame.count())));
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Writes the profile in the collapsed stack format, with the self times in nanoseconds
+	 *
+	 * @param aFile
+	 * @throws IOException
+	 */
+	public void writeCollapsedStacks(File aFile) throws IOException {
+		try (Writer out = Files.newBufferedWriter(aFile.toPath(), UTF8)) {
+			for (Map.Entry<String, long[]> aStack : this.collapsedStacks().entrySet()) {
+				out.write(aStack.getKey());
+				out.write(' ');
+				out.write(Long.toString(aStack.getValue()[0]));
+				out.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of the frame as written in a collapsed stack, where the semicolons separate the frames and the lines separate the stacks
+	 *
+	 * @param name
+	 * @return frame name
+	 */
+	static String frameName(String name) {
+		return name.replace(';', ',').replace('\n', ' ').replace('\r', ' ');
+	}
+
+	private static double milliseconds(long time) {
+		return time / 1000000.0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " threads: " + _roots.size() + " >";
+	}
+
+}
@@ -20,9 +20,20 @@ import com.webobjects.foundation.NSKeyValueCoding;
  * @param <T>
  */
 public class GeneratorProxy<T> implements NSKeyValueCoding, NSKeyValueCoding.ErrorHandling {
-	private String	_name;
+	private static final GeneratorAccessorCache	_accessorCache	= new GeneratorAccessorCache();
 
-	private T		_proxiedObject;
+	private String								_name;
+
+	private T									_proxiedObject;
+
+	// Name forms read by the templates for every render, computed once. Concurrent computations give the same string.
+	private String								_uppercaseUnderscoreName;
+
+	private String								_initialCapitalName;
+
+	private String								_pluralName;
+
+	private String								_shortPrettyName;
 
 	/**
 	 * Construct the proxy with the target proxied object
@@ -56,21 +67,60 @@ public class GeneratorProxy<T> implements NSKeyValueCoding, NSKeyValueCoding.Err
 	}
 
 	/**
-	 * Return the fetch specification name with the first character capitalized
+	 * Return the name in JAVA_CONSTANT_STYLE.
 	 *
-	 * @return fetch specification name
+	 * @return uppercase underscore name
 	 */
 	public String uppercaseUnderscoreName() {
-		return StringUtils.camelCaseToUnderscore(name()).toUpperCase();
+		if (_uppercaseUnderscoreName == null) {
+			_uppercaseUnderscoreName = StringUtils.camelCaseToUnderscore(name()).toUpperCase();
+		}
+		return _uppercaseUnderscoreName;
 	}
 
 	/**
-	 * Return the fetch specification name in JAVA_CONSTANT_STYLE.
+	 * Return the name with the first character capitalized
 	 *
-	 * @return fetch specification name
+	 * @return initial capital name
 	 */
 	public String initialCapitalName() {
-		return StringUtils.toUppercaseFirstLetter(name());
+		if (_initialCapitalName == null) {
+			_initialCapitalName = StringUtils.toUppercaseFirstLetter(name());
+		}
+		return _initialCapitalName;
+	}
+
+	/**
+	 * Return the plural form of the name
+	 *
+	 * @return plural name
+	 */
+	public String pluralName() {
+		if (_pluralName == null) {
+			_pluralName = StringUtils.toPlural(name());
+		}
+		return _pluralName;
+	}
+
+	/**
+	 * Return the name with a space in front of every upper case character
+	 *
+	 * @return short pretty name
+	 */
+	public String shortPrettyName() {
+		if (_shortPrettyName == null) {
+			_shortPrettyName = StringUtils.toShortPrettyClassName(name());
+		}
+		return _shortPrettyName;
+	}
+
+	/**
+	 * Returns the cache of the accessors used to read the keys of the proxies and their proxied objects
+	 *
+	 * @return accessor cache
+	 */
+	public static GeneratorAccessorCache accessorCache() {
+		return _accessorCache;
 	}
 
 	/*
@@ -88,7 +138,7 @@ public class GeneratorProxy<T> implements NSKeyValueCoding, NSKeyValueCoding.Err
 	 * @see com.webobjects.foundation.NSKeyValueCoding#valueForKey(java.lang.String)
 	 */
 	public Object valueForKey(String key) {
-		return NSKeyValueCoding.DefaultImplementation.valueForKey(this, key);
+		return _accessorCache.valueForKey(this, key);
 	}
 
 	/*
@@ -98,7 +148,7 @@ public class GeneratorProxy<T> implements NSKeyValueCoding, NSKeyValueCoding.Err
 	 */
 	public Object handleQueryWithUnboundKey(String key) {
 		if (_proxiedObject != null) {
-			return NSKeyValueCoding.DefaultImplementation.valueForKey(_proxiedObject, key);
+			return _accessorCache.valueForKey(_proxiedObject, key);
 		} else {
 			return NSKeyValueCoding.DefaultImplementation.handleQueryWithUnboundKey(this, key);
 		}
@@ -0,0 +1,688 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and counters of a generation run. The time spent in each phase of the generation is recorded for the whole run and for the object being generated on
+ * the current thread, so the statistics can be collected while several objects are generated concurrently.
+ */
+public class GeneratorStatistics {
+
+	/**
+	 * Phases of the generation
+	 */
+	public static enum Phase {
+		/**
+		 * Loading of the model
+		 */
+		ModelLoad("Model load"),
+		/**
+		 * Construction of the proxies read by the templates
+		 */
+		ProxyConstruction("Proxy construction"),
+		/**
+		 * Parsing of the templates
+		 */
+		TemplateParse("Template parse"),
+		/**
+		 * Rendering of the templates
+		 */
+		Render("Render"),
+		/**
+		 * Unescaping of the rendered files
+		 */
+		Unescape("Unescape"),
+		/**
+		 * Comparison with the existing files
+		 */
+		Compare("Compare"),
+		/**
+		 * Writing of the generated files
+		 */
+		Write("Write");
+
+		private String	_label;
+
+		private Phase(String label) {
+			_label = label;
+		}
+
+		/**
+		 * @return name of the phase in the reports
+		 */
+		public String label() {
+			return _label;
+		}
+	}
+
+	/**
+	 * Timings of one generated object
+	 */
+	public static class ObjectStatistics {
+		String	_name;
+
+		long[]	_times;
+
+		long	_startTime;
+
+		long	_totalTime;
+
+		ObjectStatistics(String name) {
+			_name = name;
+			_times = new long[Phase.values().length];
+			_startTime = System.nanoTime();
+		}
+
+		/**
+		 * @return name of the object
+		 */
+		public String name() {
+			return _name;
+		}
+
+		/**
+		 * @param phase
+		 * @return time spent in the phase, in nanoseconds
+		 */
+		public long timeForPhase(Phase phase) {
+			return _times[phase.ordinal()];
+		}
+
+		/**
+		 * @return time spent generating the object, in nanoseconds
+		 */
+		public long totalTime() {
+			return _totalTime;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "<" + this.getClass().getName() + " name: '" + _name + "' total: " + _totalTime + "ns >";
+		}
+	}
+
+	private static final Charset				UTF8	= Charset.forName("UTF-8");
+
+	private AtomicLongArray						_times;
+
+	private AtomicLongArray						_counts;
+
+	private AtomicLong							_writtenFileCount;
+
+	private AtomicLong							_skippedFileCount;
+
+	private AtomicLong							_unchangedObjectCount;
+
+	private AtomicLong							_objectCount;
+
+	private List<ObjectStatistics>				_objects;
+
+	private ThreadLocal<ObjectStatistics>		_currentObject;
+
+	private long								_startTime;
+
+	private long								_endTime;
+
+	/**
+	 * Sole constructor
+	 */
+	public GeneratorStatistics() {
+		super();
+		_times = new AtomicLongArray(Phase.values().length);
+		_counts = new AtomicLongArray(Phase.values().length);
+		_writtenFileCount = new AtomicLong();
+		_skippedFileCount = new AtomicLong();
+		_unchangedObjectCount = new AtomicLong();
+		_objectCount = new AtomicLong();
+		_objects = Collections.synchronizedList(new ArrayList<ObjectStatistics>());
+		_currentObject = new ThreadLocal<ObjectStatistics>();
+		_startTime = System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of the generation run
+	 */
+	public void end() {
+		_endTime = System.nanoTime();
+	}
+
+	/**
+	 * Starts recording the timings of an object generated on the current thread
+	 *
+	 * @param name
+	 *            name of the object in the reports
+	 */
+	public void beginObject(String name) {
+		_currentObject.set(new ObjectStatistics(name));
+	}
+
+	/**
+	 * Stops recording the timings of the object generated on the current thread
+	 */
+	public void endObject() {
+		ObjectStatistics current = _currentObject.get();
+		if (current != null) {
+			current._totalTime = System.nanoTime() - current._startTime;
+			_objects.add(current);
+			_objectCount.incrementAndGet();
+			_currentObject.remove();
+		}
+	}
+
+	/**
+	 * Adds the time spent in the phase to the run and to the object generated on the current thread
+	 *
+	 * @param time
+	 *            time in nanoseconds
+	 * @param phase
+	 */
+	public void addTimeForPhase(long time, Phase phase) {
+		_times.addAndGet(phase.ordinal(), time);
+		_counts.incrementAndGet(phase.ordinal());
+		ObjectStatistics current = _currentObject.get();
+		if (current != null) {
+			current._times[phase.ordinal()] += time;
+		}
+	}
+
+	/**
+	 * Adds the time elapsed since startTime to the phase
+	 *
+	 * @param startTime
+	 *            value of System.nanoTime() when the phase started
+	 * @param phase
+	 */
+	public void addTimeSinceForPhase(long startTime, Phase phase) {
+		this.addTimeForPhase(System.nanoTime() - startTime, phase);
+	}
+
+	/**
+	 * Counts a file written to disk
+	 */
+	public void recordWrittenFile() {
+		_writtenFileCount.incrementAndGet();
+	}
+
+	/**
+	 * Counts a generated file that was not written because it is unchanged or must not be overwritten
+	 */
+	public void recordSkippedFile() {
+		_skippedFileCount.incrementAndGet();
+	}
+
+	/**
+	 * Counts an object not generated because it did not change since the last run
+	 */
+	public void recordUnchangedObject() {
+		_unchangedObjectCount.incrementAndGet();
+	}
+
+	/**
+	 * @param phase
+	 * @return time spent in the phase, in nanoseconds
+	 */
+	public long timeForPhase(Phase phase) {
+		return _times.get(phase.ordinal());
+	}
+
+	/**
+	 * @param phase
+	 * @return number of times the phase was recorded
+	 */
+	public long countForPhase(Phase phase) {
+		return _counts.get(phase.ordinal());
+	}
+
+	/**
+	 * @return number of files written
+	 */
+	public long writtenFileCount() {
+		return _writtenFileCount.get();
+	}
+
+	/**
+	 * @return number of files skipped
+	 */
+	public long skippedFileCount() {
+		return _skippedFileCount.get();
+	}
+
+	/**
+	 * @return number of unchanged objects
+	 */
+	public long unchangedObjectCount() {
+		return _unchangedObjectCount.get();
+	}
+
+	/**
+	 * @return number of generated objects
+	 */
+	public long objectCount() {
+		return _objectCount.get();
+	}
+
+	/**
+	 * @return duration of the run in nanoseconds, up to now if the run did not end
+	 */
+	public long totalTime() {
+		return (_endTime != 0 ? _endTime : System.nanoTime()) - _startTime;
+	}
+
+	/**
+	 * Returns the timings of the generated objects, in the order they completed
+	 *
+	 * @return object timings
+	 */
+	public List<ObjectStatistics> objects() {
+		synchronized (_objects) {
+			return new ArrayList<ObjectStatistics>(_objects);
+		}
+	}
+
+	/**
+	 * Returns the slowest generated objects
+	 *
+	 * @param count
+	 *            maximum number of objects
+	 * @return object timings, slowest first
+	 */
+	public List<ObjectStatistics> slowestObjects(int count) {
+		List<ObjectStatistics> objects = this.objects();
+		Collections.sort(objects, new Comparator<ObjectStatistics>() {
+			public int compare(ObjectStatistics object1, ObjectStatistics object2) {
+				return (object1._totalTime < object2._totalTime ? 1 : (object1._totalTime > object2._totalTime ? -1 : object1._name.compareTo(object2._name)));
+			}
+		});
+		return (objects.size() > count ? objects.subList(0, Math.max(count, 0)) : objects);
+	}
+
+	/**
+	 * Returns the summary table of the run with the slowest objects
+	 *
+	 * @param count
+	 *            number of slowest objects to list
+	 * @return summary
+	 */
+	public String summary(int count) {
+		StringBuilder summary = new StringBuilder();
+		summary.append("Generation statistics\n");
+		summary.append(String.format(Locale.US, "  %-20s %12s %10s%n", "Phase", "Time (ms)", "Count"));
+		for (Phase phase : Phase.values()) {
+			summary.append(String.format(Locale.US, "  %-20s %12.2f %10d%n", phase.label(), milliseconds(this.timeForPhase(phase)), Long.valueOf(this.countForPhase(phase))));
+		}
+		summary.append(String.format(Locale.US, "  %-20s %12.2f %10d%n", "Total", milliseconds(this.totalTime()), Long.valueOf(this.objectCount())));
+		summary.append("Files written: ").append(this.writtenFileCount());
+		summary.append(", skipped: ").append(this.skippedFileCount());
+		summary.append(", unchanged objects: ").append(this.unchangedObjectCount()).append('\n');
+		List<ObjectStatistics> slowest = this.slowestObjects(count);
+		if (slowest.size() > 0) {
+			summary.append("Slowest objects:\n");
+			for (ObjectStatistics anObject : slowest) {
+				summary.append(String.format(Locale.US, "  %-40s %12.2f ms", anObject.name(), milliseconds(anObject.totalTime())));
+				for (Phase phase : Phase.values()) {
+					if (anObject.timeForPhase(phase) > 0) {
+						summary.append(String.format(Locale.US, "  %s %.2f", phase.label().toLowerCase(Locale.US), milliseconds(anObject.timeForPhase(phase))));
+					}
+				}
+				summary.append('\n');
+			}
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Returns the statistics as a JSON document, times in nanoseconds
+	 *
+	 * @param count
+	 *            number of slowest objects to list
+	 * @return JSON document
+	 */
+	public String toJSON(int count) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"totalTime\": ").append(this.totalTime());
+		json.append(",\n  \"objects\": ").append(this.objectCount());
+		json.append(",\n  \"writtenFiles\": ").append(this.writtenFileCount());
+		json.append(",\n  \"skippedFiles\": ").append(this.skippedFileCount());
+		json.append(",\n  \"unchangedObjects\": ").append(this.unchangedObjectCount());
+		json.append(",\n  \"phases\": {");
+		for (Phase phase : Phase.values()) {
+			json.append(phase.ordinal() > 0 ? "," : "").append("\n    \"").append(phase.name()).append("\": { \"time\": ").append(this.timeForPhase(phase));
+			json.append(", \"count\": ").append(this.countForPhase(phase)).append(" }");
+		}
+		json.append("\n  },\n  \"slowestObjects\": [");
+		List<ObjectStatistics> slowest = this.slowestObjects(count);
+		for (int index = 0; index < slowest.size(); index++) {
+			ObjectStatistics anObject = slowest.get(index);
+			json.append(index > 0 ? "," : "").append("\n    { \"name\": ");
+			appendJSONString(anObject.name(), json);
+			json.append(", \"totalTime\": ").append(anObject.totalTime());
+			for (Phase phase : Phase.values()) {
+				json.append(", \"").append(phase.name()).append("\": ").append(anObject.timeForPhase(phase));
+			}
+			json.append(" }");
+		}
+		json.append("\n  ]\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Writes the statistics as a JSON document
+	 *
+	 * @param count
+	 *            number of slowest objects to list
+	 * @param aFile
+	 * @throws IOException
+	 */
+	public void writeJSON(int count, File aFile) throws IOException {
+		try (Writer out = Files.newBufferedWriter(aFile.toPath(), UTF8)) {
+			out.write(this.toJSON(count));
+		}
+	}
+
+	/**
+	 * Reads the statistics from a JSON document written by writeJSON(int, File). Only the slowest objects of the document are read.
+	 *
+	 * @param aFile
+	 * @return statistics
+	 * @throws IOException
+	 *             if the file cannot be read or is not a statistics document
+	 */
+	public static GeneratorStatistics readJSON(File aFile) throws IOException {
+		Object document = new JSONReader(new String(Files.readAllBytes(aFile.toPath()), UTF8)).readDocument();
+		if (!(document instanceof Map<?, ?>)) {
+			throw new IOException("Not a statistics document: '" + aFile + "'");
+		}
+		Map<?, ?> values = (Map<?, ?>) document;
+		GeneratorStatistics statistics = new GeneratorStatistics();
+		statistics._endTime = statistics._startTime + longValue(values.get("totalTime"));
+		statistics._objectCount.set(longValue(values.get("objects")));
+		statistics._writtenFileCount.set(longValue(values.get("writtenFiles")));
+		statistics._skippedFileCount.set(longValue(values.get("skippedFiles")));
+		statistics._unchangedObjectCount.set(longValue(values.get("unchangedObjects")));
+		Object phases = values.get("phases");
+		for (Phase phase : Phase.values()) {
+			Object phaseValues = (phases instanceof Map<?, ?> ? ((Map<?, ?>) phases).get(phase.name()) : null);
+			if (phaseValues instanceof Map<?, ?>) {
+				statistics._times.set(phase.ordinal(), longValue(((Map<?, ?>) phaseValues).get("time")));
+				statistics._counts.set(phase.ordinal(), longValue(((Map<?, ?>) phaseValues).get("count")));
+			}
+		}
+		Object objects = values.get("slowestObjects");
+		if (objects instanceof List<?>) {
+			for (Object anObject : (List<?>) objects) {
+				if (anObject instanceof Map<?, ?>) {
+					Map<?, ?> objectValues = (Map<?, ?>) anObject;
+					ObjectStatistics objectStatistics = new ObjectStatistics(String.valueOf(objectValues.get("name")));
+					objectStatistics._totalTime = longValue(objectValues.get("totalTime"));
+					for (Phase phase : Phase.values()) {
+						objectStatistics._times[phase.ordinal()] = longValue(objectValues.get(phase.name()));
+					}
+					statistics._objects.add(objectStatistics);
+				}
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Merges the statistics of the shards of a generation run. The times, counters and objects are added, the total time is the time of the longest shard as
+	 * the shards run concurrently.
+	 *
+	 * @param shardStatistics
+	 * @return merged statistics
+	 */
+	public static GeneratorStatistics mergedStatistics(List<GeneratorStatistics> shardStatistics) {
+		GeneratorStatistics statistics = new GeneratorStatistics();
+		long totalTime = 0;
+		for (GeneratorStatistics aShard : shardStatistics) {
+			totalTime = Math.max(totalTime, aShard.totalTime());
+			statistics._objectCount.addAndGet(aShard.objectCount());
+			statistics._writtenFileCount.addAndGet(aShard.writtenFileCount());
+			statistics._skippedFileCount.addAndGet(aShard.skippedFileCount());
+			statistics._unchangedObjectCount.addAndGet(aShard.unchangedObjectCount());
+			for (Phase phase : Phase.values()) {
+				statistics._times.addAndGet(phase.ordinal(), aShard.timeForPhase(phase));
+				statistics._counts.addAndGet(phase.ordinal(), aShard.countForPhase(phase));
+			}
+			statistics._objects.addAll(aShard.objects());
+		}
+		statistics._endTime = statistics._startTime + totalTime;
+		return statistics;
+	}
+
+	private static long longValue(Object value) {
+		return (value instanceof Number ? ((Number) value).longValue() : 0);
+	}
+
+	private static double milliseconds(long time) {
+		return time / 1000000.0;
+	}
+
+	static void appendJSONString(String value, StringBuilder json) {
+		json.append('"');
+		for (int index = 0; index < value.length(); index++) {
+			char aChar = value.charAt(index);
+			if ((aChar == '"') || (aChar == '\\')) {
+				json.append('\\').append(aChar);
+			} else if (aChar < 0x20) {
+				json.append(String.format("\\u%04x", Integer.valueOf(aChar)));
+			} else {
+				json.append(aChar);
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * Reader of the JSON documents written by the statistics, the numbers are read as Long or Double
+	 */
+	static class JSONReader {
+		private String	_text;
+
+		private int		_index;
+
+		JSONReader(String text) {
+			_text = text;
+		}
+
+		Object readDocument() throws IOException {
+			Object value = this.readValue();
+			this.skipWhitespace();
+			if (_index < _text.length()) {
+				throw this.syntaxError();
+			}
+			return value;
+		}
+
+		private Object readValue() throws IOException {
+			this.skipWhitespace();
+			if (_index >= _text.length()) {
+				throw this.syntaxError();
+			}
+			char aChar = _text.charAt(_index);
+			if (aChar == '{') {
+				return this.readObject();
+			} else if (aChar == '[') {
+				return this.readArray();
+			} else if (aChar == '"') {
+				return this.readString();
+			} else if (_text.startsWith("true", _index)) {
+				_index += 4;
+				return Boolean.TRUE;
+			} else if (_text.startsWith("false", _index)) {
+				_index += 5;
+				return Boolean.FALSE;
+			} else if (_text.startsWith("null", _index)) {
+				_index += 4;
+				return null;
+			}
+			return this.readNumber();
+		}
+
+		private Map<String, Object> readObject() throws IOException {
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			_index++;
+			this.skipWhitespace();
+			if (this.skip('}')) {
+				return values;
+			}
+			do {
+				this.skipWhitespace();
+				if ((_index >= _text.length()) || (_text.charAt(_index) != '"')) {
+					throw this.syntaxError();
+				}
+				String key = this.readString();
+				this.skipWhitespace();
+				if (!this.skip(':')) {
+					throw this.syntaxError();
+				}
+				values.put(key, this.readValue());
+				this.skipWhitespace();
+			} while (this.skip(','));
+			if (!this.skip('}')) {
+				throw this.syntaxError();
+			}
+			return values;
+		}
+
+		private List<Object> readArray() throws IOException {
+			List<Object> values = new ArrayList<Object>();
+			_index++;
+			this.skipWhitespace();
+			if (this.skip(']')) {
+				return values;
+			}
+			do {
+				values.add(this.readValue());
+				this.skipWhitespace();
+			} while (this.skip(','));
+			if (!this.skip(']')) {
+				throw this.syntaxError();
+			}
+			return values;
+		}
+
+		private String readString() throws IOException {
+			StringBuilder value = new StringBuilder();
+			_index++;
+			while (_index < _text.length()) {
+				char aChar = _text.charAt(_index++);
+				if (aChar == '"') {
+					return value.toString();
+				} else if (aChar != '\\') {
+					value.append(aChar);
+				} else if (_index < _text.length()) {
+					char escaped = _text.charAt(_index++);
+					switch (escaped) {
+						case 'b':
+							value.append('\b');
+							break;
+						case 'f':
+							value.append('\f');
+							break;
+						case 'n':
+							value.append('\n');
+							break;
+						case 'r':
+							value.append('\r');
+							break;
+						case 't':
+							value.append('\t');
+							break;
+						case 'u':
+							if (_index + 4 > _text.length()) {
+								throw this.syntaxError();
+							}
+							try {
+								value.append((char) Integer.parseInt(_text.substring(_index, _index + 4), 16));
+							} catch (NumberFormatException exception) {
+								throw this.syntaxError();
+							}
+							_index += 4;
+							break;
+						default:
+							value.append(escaped);
+					}
+				}
+			}
+			throw this.syntaxError();
+		}
+
+		private Number readNumber() throws IOException {
+			int start = _index;
+			while ((_index < _text.length()) && ("+-0123456789.eE".indexOf(_text.charAt(_index)) >= 0)) {
+				_index++;
+			}
+			String value = _text.substring(start, _index);
+			try {
+				if ((value.indexOf('.') >= 0) || (value.indexOf('e') >= 0) || (value.indexOf('E') >= 0)) {
+					return Double.valueOf(value);
+				}
+				return Long.valueOf(value);
+			} catch (NumberFormatException exception) {
+				_index = start;
+				throw this.syntaxError();
+			}
+		}
+
+		private boolean skip(char aChar) {
+			if ((_index < _text.length()) && (_text.charAt(_index) == aChar)) {
+				_index++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while ((_index < _text.length()) && Character.isWhitespace(_text.charAt(_index))) {
+				_index++;
+			}
+		}
+
+		private IOException syntaxError() {
+			return new IOException("Invalid JSON at offset " + _index);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " objects: " + this.objectCount() + " written: " + this.writtenFileCount() + " skipped: " + this.skippedFileCount() + " unchanged: "
+				+ this.unchangedObjectCount() + " >";
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.webobjects.appserver.WOApplication;
+import com.webobjects.appserver.WOElement;
+import com.webobjects.appserver.parser.WOComponentTemplateParser;
+
+/**
+ * Cache of parsed templates shared by all the generator components of a generation run. Templates are keyed on their content so the same template string is only
+ * parsed once, whichever component asks for it.
+ */
+public class GeneratorTemplateCache {
+
+	private Map<String, WOElement>	_templates;
+
+	private AtomicLong				_hitCount;
+
+	private AtomicLong				_missCount;
+
+	/**
+	 * Sole constructor
+	 */
+	public GeneratorTemplateCache() {
+		super();
+		_templates = new ConcurrentHashMap<String, WOElement>();
+		_hitCount = new AtomicLong();
+		_missCount = new AtomicLong();
+	}
+
+	/**
+	 * Returns the parsed template for the template string, parsing it on the first request.
+	 *
+	 * @param templateString
+	 * @return parsed template or null if the template cannot be parsed
+	 */
+	public WOElement templateForString(String templateString) {
+		WOElement template = _templates.get(templateString);
+		if (template != null) {
+			_hitCount.incrementAndGet();
+		} else {
+			synchronized (this) {
+				template = _templates.get(templateString);
+				if (template != null) {
+					_hitCount.incrementAndGet();
+				} else {
+					_missCount.incrementAndGet();
+					template = this.parseTemplate(templateString);
+					if (template != null) {
+						_templates.put(templateString, template);
+					}
+				}
+			}
+		}
+		return template;
+	}
+
+	/**
+	 * Parses the template string. Subclasses can override this method to use a different parser.
+	 *
+	 * @param templateString
+	 * @return parsed template or null if the template cannot be parsed
+	 */
+	protected WOElement parseTemplate(String templateString) {
+		WOElement template = null;
+		try {
+			template = WOComponentTemplateParser.templateWithHTMLAndDeclaration("Template", templateString, "", null, WOApplication.application().associationFactory(), WOApplication
+					.application().namespaceProvider());
+		} catch (Exception exception) {/**/
+			exception.printStackTrace();
+		}
+		return template;
+	}
+
+	/**
+	 * Returns the number of requests answered from the cache
+	 *
+	 * @return hit count
+	 */
+	public long hitCount() {
+		return _hitCount.get();
+	}
+
+	/**
+	 * Returns the number of requests that needed a template parse
+	 *
+	 * @return miss count
+	 */
+	public long missCount() {
+		return _missCount.get();
+	}
+
+	/**
+	 * Returns the number of parsed templates in the cache
+	 *
+	 * @return number of templates
+	 */
+	public int count() {
+		return _templates.size();
+	}
+
+	/**
+	 * Removes all the parsed templates and resets the counters
+	 */
+	public synchronized void clear() {
+		_templates.clear();
+		_hitCount.set(0);
+		_missCount.set(0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " templates: " + this.count() + " hits: " + this.hitCount() + " misses: " + this.missCount() + " >";
+	}
+
+}
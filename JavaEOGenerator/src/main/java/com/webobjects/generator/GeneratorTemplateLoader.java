@@ -0,0 +1,144 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads template files in the template encoding. The content of each file is kept until the file is modified, so the templates are only read once per
+ * generation run instead of once per generated object.
+ * <p>
+ * Line terminators are converted to \n and the content is trimmed, as the generator always did.
+ * </p>
+ */
+public class GeneratorTemplateLoader {
+
+	private Charset				_charset;
+
+	private Map<Path, Template>	_templates;
+
+	/**
+	 * Content of a template file with the file attributes it was read with
+	 */
+	static class Template {
+		FileTime	_lastModifiedTime;
+
+		long		_size;
+
+		String		_content;
+
+		Template(FileTime lastModifiedTime, long size, String content) {
+			_lastModifiedTime = lastModifiedTime;
+			_size = size;
+			_content = content;
+		}
+
+		boolean isCurrent(BasicFileAttributes attributes) {
+			return (_size == attributes.size()) && _lastModifiedTime.equals(attributes.lastModifiedTime());
+		}
+	}
+
+	/**
+	 * @param charset
+	 *            encoding of the template files
+	 */
+	public GeneratorTemplateLoader(Charset charset) {
+		super();
+		_charset = (charset != null ? charset : Charset.defaultCharset());
+		_templates = new ConcurrentHashMap<Path, Template>();
+	}
+
+	/**
+	 * Returns the encoding of the template files
+	 *
+	 * @return charset
+	 */
+	public Charset charset() {
+		return _charset;
+	}
+
+	/**
+	 * Returns the content of the template file, reading it only if it changed since the last call.
+	 *
+	 * @param templateFileUrl
+	 * @return template content
+	 * @throws URISyntaxException
+	 *             if the url is not a file url
+	 * @throws IOException
+	 *             if the file cannot be read, java.nio.file.NoSuchFileException if it does not exist
+	 */
+	public String templateForURL(URL templateFileUrl) throws URISyntaxException, IOException {
+		return this.templateForPath(Paths.get(templateFileUrl.toURI()));
+	}
+
+	/**
+	 * Returns the content of the template file, reading it only if it changed since the last call.
+	 *
+	 * @param templatePath
+	 * @return template content
+	 * @throws IOException
+	 *             if the file cannot be read, java.nio.file.NoSuchFileException if it does not exist
+	 */
+	public String templateForPath(Path templatePath) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(templatePath, BasicFileAttributes.class);
+		Template template = _templates.get(templatePath);
+		if ((template == null) || !template.isCurrent(attributes)) {
+			template = new Template(attributes.lastModifiedTime(), attributes.size(), this.readTemplate(templatePath));
+			_templates.put(templatePath, template);
+		}
+		return template._content;
+	}
+
+	/**
+	 * Reads the whole template file
+	 *
+	 * @param templatePath
+	 * @return template content
+	 * @throws IOException
+	 */
+	protected String readTemplate(Path templatePath) throws IOException {
+		String content = new String(Files.readAllBytes(templatePath), _charset);
+		if (content.indexOf('\r') != -1) {
+			content = content.replace("\r\n", "\n").replace('\r', '\n');
+		}
+		return content.trim();
+	}
+
+	/**
+	 * Forgets all the templates read so far
+	 */
+	public void clear() {
+		_templates.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " charset: '" + _charset + "' templates: " + _templates.keySet() + " >";
+	}
+
+}
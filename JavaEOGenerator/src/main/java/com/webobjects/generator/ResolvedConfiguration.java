@@ -0,0 +1,344 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the option values of a configuration, resolved once the options are decoded. The generators read the options in their generation
+ * loops: the snapshot returns typed fields where the configuration looks the options up by name, and searches the template files only once.
+ * <p>
+ * The configuration stays the parsing front-end and the source of the help and the description of the options.
+ * </p>
+ *
+ * @see Configuration#resolvedConfiguration()
+ */
+public class ResolvedConfiguration {
+
+	private final boolean				_verbose;
+
+	private final boolean				_help;
+
+	private final boolean				_version;
+
+	private final String				_encoding;
+
+	private final String				_templateEncoding;
+
+	private final String				_filenameTemplate;
+
+	private final URL					_destination;
+
+	private final URL					_subClassDestination;
+
+	private final boolean				_packageDirectories;
+
+	private final String				_prefix;
+
+	private final boolean				_incremental;
+
+	private final boolean				_statistics;
+
+	private final int					_statisticsTop;
+
+	private final String				_statisticsJSON;
+
+	private final String				_profile;
+
+	private final int					_shardIndex;
+
+	private final int					_shardCount;
+
+	private final int					_mergeShards;
+
+	private final String				_templateEngine;
+
+	private final boolean				_dryRun;
+
+	private final String				_dryRunReport;
+
+	private final URL					_templateDirectory;
+
+	private final URL					_javaTemplate;
+
+	private final URL					_subClassJavaTemplate;
+
+	private final List<String>			_arguments;
+
+	private final Map<String, String>	_additionalKeyValues;
+
+	/**
+	 * @param configuration
+	 *            configuration with decoded options
+	 */
+	public ResolvedConfiguration(Configuration configuration) {
+		super();
+		_verbose = ResolvedConfiguration.booleanValue(configuration.verbose());
+		_help = ResolvedConfiguration.booleanValue(configuration.help());
+		_version = ResolvedConfiguration.booleanValue(configuration.version());
+		_encoding = configuration.encoding();
+		_templateEncoding = configuration.templateEncoding();
+		_filenameTemplate = (configuration.filenameTemplate() != null ? configuration.filenameTemplate() : "");
+		_destination = configuration.destination();
+		_subClassDestination = configuration.subClassDestination();
+		_packageDirectories = ResolvedConfiguration.booleanValue(configuration.packageDirectories());
+		_prefix = (configuration.prefix() != null ? configuration.prefix() : "_");
+		_incremental = ResolvedConfiguration.booleanValue(configuration.incremental());
+		_statistics = ResolvedConfiguration.booleanValue(configuration.statistics());
+		_statisticsTop = (configuration.statisticsTop() != null ? configuration.statisticsTop().intValue() : 10);
+		_statisticsJSON = (configuration.statisticsJSON() != null ? configuration.statisticsJSON() : "");
+		_profile = (configuration.profile() != null ? configuration.profile() : "");
+		_shardIndex = (configuration.shardIndex() != null ? configuration.shardIndex().intValue() : 0);
+		_shardCount = (configuration.shardCount() != null ? configuration.shardCount().intValue() : 0);
+		_mergeShards = (configuration.mergeShards() != null ? configuration.mergeShards().intValue() : 0);
+		_templateEngine = configuration.templateEngine();
+		_dryRun = ResolvedConfiguration.booleanValue(configuration.dryRun());
+		_dryRunReport = (configuration.dryRunReport() != null ? configuration.dryRunReport() : "");
+		_templateDirectory = configuration.templateDirectory();
+		_javaTemplate = configuration.javaTemplate();
+		_subClassJavaTemplate = configuration.subClassJavaTemplate();
+		_arguments = Collections.unmodifiableList(new ArrayList<String>(configuration.arguments()));
+		_additionalKeyValues = Collections.unmodifiableMap(new HashMap<String, String>(configuration.additionalKeyValues()));
+	}
+
+	/**
+	 * Returns the value of a boolean option, false if the option has no value
+	 *
+	 * @param value
+	 * @return boolean value
+	 */
+	protected static boolean booleanValue(Boolean value) {
+		return (value != null) && value.booleanValue();
+	}
+
+	/**
+	 * @return true if verbose
+	 */
+	public boolean verbose() {
+		return _verbose;
+	}
+
+	/**
+	 * @return true if the help needs to be displayed
+	 */
+	public boolean help() {
+		return _help;
+	}
+
+	/**
+	 * @return true if the version needs to be displayed
+	 */
+	public boolean version() {
+		return _version;
+	}
+
+	/**
+	 * @return encoding of the generated files
+	 */
+	public String encoding() {
+		return _encoding;
+	}
+
+	/**
+	 * @return encoding of the template files
+	 */
+	public String templateEncoding() {
+		return _templateEncoding;
+	}
+
+	/**
+	 * @return filename template, or an empty string
+	 */
+	public String filenameTemplate() {
+		return _filenameTemplate;
+	}
+
+	/**
+	 * @return destination directory
+	 */
+	public URL destination() {
+		return _destination;
+	}
+
+	/**
+	 * @return destination directory of the sub classes
+	 */
+	public URL subClassDestination() {
+		return _subClassDestination;
+	}
+
+	/**
+	 * @return true if the files are generated in package directories
+	 */
+	public boolean packageDirectories() {
+		return _packageDirectories;
+	}
+
+	/**
+	 * @return super class prefix
+	 */
+	public String prefix() {
+		return _prefix;
+	}
+
+	/**
+	 * @return true if the generation is incremental
+	 */
+	public boolean incremental() {
+		return _incremental;
+	}
+
+	/**
+	 * @return true if the statistics are displayed
+	 */
+	public boolean statistics() {
+		return _statistics;
+	}
+
+	/**
+	 * @return number of slowest objects in the statistics
+	 */
+	public int statisticsTop() {
+		return _statisticsTop;
+	}
+
+	/**
+	 * @return path of the JSON statistics file or an empty string
+	 */
+	public String statisticsJSON() {
+		return _statisticsJSON;
+	}
+
+	/**
+	 * @return path of the template profile file or an empty string
+	 */
+	public String profile() {
+		return _profile;
+	}
+
+	/**
+	 * @return index of the generated shard from 1 to shardCount(), or 0 if the generation is not sharded
+	 */
+	public int shardIndex() {
+		return _shardIndex;
+	}
+
+	/**
+	 * @return number of shards, or 0 if the generation is not sharded
+	 */
+	public int shardCount() {
+		return _shardCount;
+	}
+
+	/**
+	 * @return true if only a shard of the objects is generated
+	 */
+	public boolean isSharded() {
+		return _shardCount > 0;
+	}
+
+	/**
+	 * @return number of shards to merge, or 0 if the shards are not merged
+	 */
+	public int mergeShards() {
+		return _mergeShards;
+	}
+
+	/**
+	 * @return template engine name
+	 */
+	public String templateEngine() {
+		return _templateEngine;
+	}
+
+	/**
+	 * @return true if the generated files are compared but not written
+	 */
+	public boolean dryRun() {
+		return _dryRun;
+	}
+
+	/**
+	 * @return path of the dry run report file or an empty string
+	 */
+	public String dryRunReport() {
+		return _dryRunReport;
+	}
+
+	/**
+	 * @return template directory
+	 */
+	public URL templateDirectory() {
+		return _templateDirectory;
+	}
+
+	/**
+	 * @return class template url, or null if the template was not found
+	 */
+	public URL javaTemplate() {
+		return _javaTemplate;
+	}
+
+	/**
+	 * @return sub class template url, or null if the template was not found
+	 */
+	public URL subClassJavaTemplate() {
+		return _subClassJavaTemplate;
+	}
+
+	/**
+	 * @return arguments in the order they appeared on the command line, the returned list is immutable
+	 */
+	public List<String> arguments() {
+		return _arguments;
+	}
+
+	/**
+	 * @return true if there are arguments
+	 */
+	public boolean hasArguments() {
+		return _arguments.size() > 0;
+	}
+
+	/**
+	 * @return additional key values, the returned map is immutable
+	 */
+	public Map<String, String> additionalKeyValues() {
+		return _additionalKeyValues;
+	}
+
+	/**
+	 * @param key
+	 * @return additional key value
+	 */
+	public String valueForAdditionalKey(String key) {
+		return _additionalKeyValues.get(key);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<" + this.getClass().getName() + " prefix: '" + _prefix + "' destination: '" + _destination + "' javaTemplate: '" + _javaTemplate
+				+ "' subClassJavaTemplate: '" + _subClassJavaTemplate + "' arguments: " + _arguments + " >";
+	}
+
+}
@@ -38,13 +38,14 @@ public class StringUtils {
 		if (shortName.startsWith("EO")) {
 			shortName = shortName.substring(2);
 		}
-		StringBuffer nameBuffer = new StringBuffer(shortName);
-		for (int i = 0; i < nameBuffer.length(); i++) {
-			char ch = nameBuffer.charAt(i);
+		int length = shortName.length();
+		StringBuilder nameBuffer = new StringBuilder(length + (length >> 2) + 1);
+		for (int i = 0; i < length; i++) {
+			char ch = shortName.charAt(i);
 			if (Character.isUpperCase(ch) && i != 0) {
-				nameBuffer.insert(i, ' ');
-				i++;
+				nameBuffer.append(' ');
 			}
+			nameBuffer.append(ch);
 		}
 		return nameBuffer.toString();
 	}
@@ -107,19 +108,10 @@ public class StringUtils {
 	 */
 	public static String toLowercaseFirstLetter(String name) {
 		int firstLetterIndex = StringUtils.firstLetterIndex(name);
-		String newName;
 		if (firstLetterIndex == -1) {
-			newName = name;
-		} else {
-			StringBuffer sb = new StringBuffer();
-			if (firstLetterIndex > 0) {
-				sb.append(name.substring(0, firstLetterIndex));
-			}
-			sb.append(Character.toLowerCase(name.charAt(firstLetterIndex)));
-			sb.append(name.substring(firstLetterIndex + 1));
-			newName = sb.toString();
+			return name;
 		}
-		return newName;
+		return StringUtils.replaceCharacterAtIndex(name, Character.toLowerCase(name.charAt(firstLetterIndex)), firstLetterIndex);
 	}
 
 	/**
@@ -131,19 +123,30 @@ public class StringUtils {
 	 */
 	public static String toUppercaseFirstLetter(String name) {
 		int firstLetterIndex = StringUtils.firstLetterIndex(name);
-		String newName;
 		if (firstLetterIndex == -1) {
-			newName = name;
-		} else {
-			StringBuffer sb = new StringBuffer();
-			if (firstLetterIndex > 0) {
-				sb.append(name.substring(0, firstLetterIndex));
-			}
-			sb.append(Character.toUpperCase(name.charAt(firstLetterIndex)));
-			sb.append(name.substring(firstLetterIndex + 1));
-			newName = sb.toString();
+			return name;
+		}
+		return StringUtils.replaceCharacterAtIndex(name, Character.toUpperCase(name.charAt(firstLetterIndex)), firstLetterIndex);
+	}
+
+	/**
+	 * Returns the name with the character at index replaced, or the name itself if the character is the same.
+	 *
+	 * @param name
+	 *            target string
+	 * @param ch
+	 *            new character
+	 * @param index
+	 *            index of the character to replace
+	 * @return transformed string
+	 */
+	private static String replaceCharacterAtIndex(String name, char ch, int index) {
+		if (name.charAt(index) == ch) {
+			return name;
 		}
-		return newName;
+		char[] characters = name.toCharArray();
+		characters[index] = ch;
+		return new String(characters);
 	}
 
 	/**
@@ -154,12 +157,13 @@ public class StringUtils {
 	 * @return the string_with_underscores
 	 */
 	public static String camelCaseToUnderscore(String camelString) {
-		StringBuffer underscore = new StringBuffer();
+		int length = camelString.length();
+		StringBuilder underscore = new StringBuilder(length + (length >> 2) + 1);
 		boolean lastCharacterWasWordBreak = true;
-		for (int i = 0; i < camelString.length(); i++) {
+		for (int i = 0; i < length; i++) {
 			char ch = camelString.charAt(i);
 			if (Character.isUpperCase(ch) && !lastCharacterWasWordBreak) {
-				underscore.append("_");
+				underscore.append('_');
 				lastCharacterWasWordBreak = true;
 			} else {
 				lastCharacterWasWordBreak = false;
@@ -180,14 +184,13 @@ public class StringUtils {
 		String plural;
 		if (name != null && name.length() > 0) {
 			char ch = name.charAt(name.length() - 1);
-			StringBuffer pluralBuffer = new StringBuffer(name);
+			StringBuilder pluralBuffer = new StringBuilder(name.length() + 3);
 			if (ch == 's' || ch == 'x') {
-				pluralBuffer.append("es");
+				pluralBuffer.append(name).append("es");
 			} else if (ch == 'y') {
-				pluralBuffer.setLength(pluralBuffer.length() - 1);
-				pluralBuffer.append("ies");
+				pluralBuffer.append(name, 0, name.length() - 1).append("ies");
 			} else {
-				pluralBuffer.append("s");
+				pluralBuffer.append(name).append('s');
 			}
 			plural = pluralBuffer.toString();
 		} else {
@@ -196,6 +199,101 @@ public class StringUtils {
 		return plural;
 	}
 
+	/**
+	 * Replaces the XML entities &amp;lt; &amp;gt; &amp;amp; &amp;quot; and &amp;apos; by the characters they stand for, in a single pass over the string.
+	 * <p>
+	 * The result is the same as replacing each entity in turn in that order, which is what the generator used to do: an &amp;amp; followed by quot; or apos;
+	 * is therefore decoded twice, while an &amp;amp; followed by lt; gt; or amp; is decoded once.
+	 * </p>
+	 *
+	 * @param value
+	 *            target string
+	 * @return unescaped string, or the string itself when it contains no entity
+	 */
+	public static String unescapeXMLEntities(String value) {
+		if (value == null) {
+			return null;
+		}
+		int ampersand = value.indexOf('&');
+		if (ampersand == -1) {
+			return value;
+		}
+		int length = value.length();
+		StringBuilder result = new StringBuilder(length);
+		int start = 0;
+		while (ampersand != -1) {
+			result.append(value, start, ampersand);
+			int index = ampersand + 1;
+			if (value.startsWith("lt;", index)) {
+				result.append('<');
+				index += 3;
+			} else if (value.startsWith("gt;", index)) {
+				result.append('>');
+				index += 3;
+			} else if (value.startsWith("amp;", index)) {
+				index += 4;
+				if (value.startsWith("quot;", index)) {
+					result.append('"');
+					index += 5;
+				} else if (value.startsWith("apos;", index)) {
+					result.append('\'');
+					index += 5;
+				} else {
+					result.append('&');
+				}
+			} else if (value.startsWith("quot;", index)) {
+				result.append('"');
+				index += 5;
+			} else if (value.startsWith("apos;", index)) {
+				result.append('\'');
+				index += 5;
+			} else {
+				result.append('&');
+			}
+			start = index;
+			ampersand = value.indexOf('&', start);
+		}
+		result.append(value, start, length);
+		return result.toString();
+	}
+
+	/**
+	 * Appends the value to the builder, replacing the characters &amp; &lt; &gt; and &quot; by their XML entities as a WOString escapes its value.
+	 *
+	 * @param value
+	 *            target string
+	 * @param result
+	 *            builder receiving the escaped string
+	 */
+	public static void appendEscapedXMLEntities(String value, StringBuilder result) {
+		int length = value.length();
+		int start = 0;
+		for (int index = 0; index < length; index++) {
+			String entity;
+			switch (value.charAt(index)) {
+				case '&':
+					entity = "&amp;";
+					break;
+				case '<':
+					entity = "&lt;";
+					break;
+				case '>':
+					entity = "&gt;";
+					break;
+				case '"':
+					entity = "&quot;";
+					break;
+				default:
+					entity = null;
+			}
+			if (entity != null) {
+				result.append(value, start, index).append(entity);
+				start = index + 1;
+			}
+		}
+		result.append(value, start, length);
+	}
+
 	/**
 	 * Checks if the path is a syntactically valid path
 	 *
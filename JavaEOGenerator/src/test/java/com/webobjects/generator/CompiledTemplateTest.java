@@ -0,0 +1,168 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+
+/**
+ * Checks which templates CompiledTemplate compiles and which ones it rejects, and that CompiledTemplateEngine hands the rejected templates to its fallback
+ * engine. Run by the test target; exits with a non-zero status on the first failure.
+ */
+public class CompiledTemplateTest {
+
+	// Templates the compiled engine must leave to the fallback engine
+	private static final String[]	UnsupportedTemplates	= {
+			"<wo:WOString value=\"[name]\"",
+			"<wo:WOString value=\"[name]\"/></wo:WOConditional>",
+			"<wo:WOConditional condition=\"[isAbstract]\">abstract ",
+			"<wo:WOConditional condition=\"[a]\"></wo:WORepetition>",
+			"<WO:WOString value=\"[name]\"/>",
+			"<webobject name=\"Name\"></webobject>",
+			"<wo:WOString value=[name]/>",
+			"<wo:WOString value/>",
+			"<wo:WOString value=\"[name]\" value=\"[other]\"/>",
+			"<wo:WOString value=\"[ ]\"/>",
+			"<wo:WOString value=\"$name\"/>",
+			"<wo:WOString value=\"~name\"/>",
+			"<wo:WOHyperlink href=\"[url]\"/>",
+			"<wo:WOString value=\"[name]\" numberformat=\"0\"/>",
+			"<wo:WOString/>",
+			"<wo:WOString value=\"[name]\">content</wo:WOString>",
+			"<wo:WOConditional/>",
+			"<wo:WORepetition item=\"[item]\"/>",
+			"<wo:WORepetition list=\"[list]\" item=\"item\"/>" };
+
+	// Templates the compiled engine must compile
+	private static final String[]	SupportedTemplates		= {
+			"",
+			"public class Plain {}",
+			"a < b && c > d",
+			"<wo:WOString value=\"[name]\"/>",
+			"<wo:WOString value='[name]' valueWhenEmpty=\"none\" escapeHTML=\"false\"/>",
+			"<wo:WOConditional condition=\"[isAbstract]\" negate=\"true\">final </wo:WOConditional>",
+			"<wo:WORepetition list=\"[attributes]\" item=\"[attribute]\" index=\"[index]\"><wo:WOString value=\"[attribute.name]\"/>\n</wo:WORepetition>",
+			"<wo:WORepetition count=\"3\"><wo:WOConditional condition=\"[index]\">, </wo:WOConditional></wo:WORepetition>" };
+
+	private int						_checks;
+
+	/**
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		CompiledTemplateTest test = new CompiledTemplateTest();
+		test.testCompileFailures();
+		test.testCompile();
+		test.testFallback();
+		test.testShippedTemplates(new File(System.getProperty("test.templates", "Templates")));
+		System.out.println(test.getClass().getName() + ": " + test._checks + " checks passed");
+	}
+
+	void testCompileFailures() {
+		for (String aTemplate : UnsupportedTemplates) {
+			try {
+				CompiledTemplate.compile(aTemplate);
+				throw new AssertionError("compiled an unsupported template: " + aTemplate);
+			} catch (ParseException exception) {
+				if ((exception.getErrorOffset() < 0) || (exception.getErrorOffset() > aTemplate.length())) {
+					throw new AssertionError("error offset " + exception.getErrorOffset() + " outside the template: " + aTemplate);
+				}
+			}
+			_checks++;
+		}
+	}
+
+	void testCompile() {
+		for (String aTemplate : SupportedTemplates) {
+			try {
+				if (CompiledTemplate.compile(aTemplate) == null) {
+					throw new AssertionError("no compiled template: " + aTemplate);
+				}
+			} catch (ParseException exception) {
+				throw new AssertionError("cannot compile: " + aTemplate + ", " + exception.getMessage() + " at " + exception.getErrorOffset());
+			}
+			_checks++;
+		}
+	}
+
+	/**
+	 * The engine compiles a template once, and remembers the templates it cannot compile until the templates are cleared
+	 */
+	void testFallback() {
+		CountingEngine fallbackEngine = new CountingEngine();
+		CompiledTemplateEngine engine = new CompiledTemplateEngine(fallbackEngine);
+		for (String aTemplate : UnsupportedTemplates) {
+			if ((engine.templateForString(aTemplate) != null) || (engine.templateForString(aTemplate) != null)) {
+				throw new AssertionError("no fallback for: " + aTemplate);
+			}
+			_checks++;
+		}
+		for (String aTemplate : SupportedTemplates) {
+			CompiledTemplate template = engine.templateForString(aTemplate);
+			if ((template == null) || (engine.templateForString(aTemplate) != template)) {
+				throw new AssertionError("template not compiled once: " + aTemplate);
+			}
+			_checks++;
+		}
+		CompiledTemplate template = engine.templateForString(SupportedTemplates[1]);
+		engine.clearTemplates();
+		if ((fallbackEngine._clearCount != 1) || (engine.templateForString(SupportedTemplates[1]) == template)) {
+			throw new AssertionError("templates not cleared: " + engine);
+		}
+		_checks++;
+	}
+
+	/**
+	 * The templates shipped with the generator use only what the compiled templates support
+	 *
+	 * @throws IOException
+	 */
+	void testShippedTemplates(File directory) throws IOException {
+		File[] templates = directory.listFiles();
+		if ((templates == null) || (templates.length == 0)) {
+			throw new AssertionError("no templates in: " + directory);
+		}
+		for (File aTemplate : templates) {
+			try {
+				CompiledTemplate.compile(new String(Files.readAllBytes(aTemplate.toPath()), "UTF-8"));
+			} catch (ParseException exception) {
+				throw new AssertionError("cannot compile: " + aTemplate + ", " + exception.getMessage() + " at " + exception.getErrorOffset());
+			}
+			_checks++;
+		}
+	}
+
+	static class CountingEngine implements GeneratorTemplateEngine {
+
+		int	_clearCount;
+
+		public void parseTemplate(GeneratorComponent<?> component) {
+			throw new UnsupportedOperationException();
+		}
+
+		public String renderTemplate(GeneratorComponent<?> component) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void renderTemplate(GeneratorComponent<?> component, GeneratedContent content) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void clearTemplates() {
+			_clearCount++;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2005 - 2007  Apple, Inc. All rights reserved.
+ *
+ * IMPORTANT:  This Apple software is supplied to you by Apple, Inc. (Apple) in consideration of your agreement to the following terms, and your use, installation, modification or redistribution of this Apple software constitutes acceptance of these terms.  If you do not agree with these terms, please do not use, install, modify or redistribute this Apple software.
+ *
+ * In consideration of your agreement to abide by the following terms, and subject to these terms, Apple grants you a personal, non-exclusive license, under Apples copyrights in this original Apple software (the Apple Software), to use, reproduce, modify and redistribute the Apple Software, with or without modifications, in source and/or binary forms; provided that if you redistribute the Apple Software in its entirety and without modifications, you must retain this notice and the following text and disclaimers in all such redistributions of the Apple Software.  Neither the name, trademarks, service marks or logos of Apple Computer, Inc. may be used to endorse or promote products derived from the Apple Software without specific prior written permission from Apple.  Except as expressly stated in this notice, no other rights or licenses, express or implied, are granted by Apple herein, including but not limited to any patent rights that may be infringed by your derivative works or by other works in which the Apple Software may be incorporated.
+ *
+ * The Apple Software is provided by Apple on an "AS IS" basis.  APPLE MAKES NO WARRANTIES, EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION THE IMPLIED WARRANTIES OF NON-INFRINGEMENT, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, REGARDING THE APPLE SOFTWARE OR ITS USE AND OPERATION ALONE OR IN COMBINATION WITH YOUR PRODUCTS.
+ *
+ * IN NO EVENT SHALL APPLE BE LIABLE FOR ANY SPECIAL, INDIRECT, INCIDENTAL OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) ARISING IN ANY WAY OUT OF THE USE, REPRODUCTION, MODIFICATION AND/OR DISTRIBUTION OF THE APPLE SOFTWARE, HOWEVER CAUSED AND WHETHER UNDER THEORY OF CONTRACT, TORT (INCLUDING NEGLIGENCE), STRICT LIABILITY OR OTHERWISE, EVEN IF APPLE HAS BEEN  ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.webobjects.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Checks that a content streamed to a file output in chunks is byte for byte the content unescaped and trimmed in memory, when an XML entity, a surrogate
+ * pair or trailing white spaces fall on a chunk boundary. Run by the test target; exits with a non-zero status on the first failure.
+ */
+public class GeneratedContentTest {
+
+	private static final Charset	UTF8		= Charset.forName("UTF-8");
+
+	// The sequences split by the chunk boundaries
+	private static final String[]	Sequences	= { "&amp;quot;", "&lt;", "\uD83D\uDE00", "x  \t\n  y", "&amp;amp;lt;" };
+
+	private File					_directory;
+
+	private int						_checks;
+
+	/**
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		GeneratedContentTest test = new GeneratedContentTest();
+		test.setUp();
+		try {
+			test.testSequencesOnChunkBoundaries();
+			test.testTrailingWhitespacesAtEnd();
+			test.testWhitespacesOnlyChunk();
+			test.testDiscardWithoutStreaming();
+		} finally {
+			test.tearDown();
+		}
+		System.out.println(test.getClass().getName() + ": " + test._checks + " checks passed");
+	}
+
+	void setUp() throws IOException {
+		_directory = Files.createTempDirectory("GeneratedContentTest").toFile();
+	}
+
+	void tearDown() {
+		for (File aFile : _directory.listFiles()) {
+			aFile.delete();
+		}
+		_directory.delete();
+	}
+
+	/**
+	 * Places each sequence across the first and the second chunk boundaries, at every offset
+	 *
+	 * @throws IOException
+	 */
+	void testSequencesOnChunkBoundaries() throws IOException {
+		for (String aSequence : Sequences) {
+			for (int boundary = 1; boundary <= 2; boundary++) {
+				for (int offset = -aSequence.length() - 1; offset <= 1; offset++) {
+					StringBuilder content = new StringBuilder();
+					this.appendFiller(content, boundary * GeneratedContent.ChunkSize + offset);
+					content.append(aSequence);
+					this.appendFiller(content, GeneratedContent.ChunkSize);
+					this.assertStreamedIdentical(content.toString(), aSequence + " at " + offset + " of boundary " + boundary);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ends the content with white spaces spread over the last chunks
+	 *
+	 * @throws IOException
+	 */
+	void testTrailingWhitespacesAtEnd() throws IOException {
+		for (int offset = -2; offset <= 2; offset++) {
+			StringBuilder content = new StringBuilder("  \n");
+			this.appendFiller(content, GeneratedContent.ChunkSize + offset);
+			char[] whitespaces = new char[GeneratedContent.ChunkSize + 3];
+			Arrays.fill(whitespaces, ' ');
+			content.append(whitespaces).append("\n\t");
+			this.assertStreamedIdentical(content.toString(), "trailing white spaces at " + offset);
+		}
+	}
+
+	/**
+	 * Follows a chunk of white spaces only with some content
+	 *
+	 * @throws IOException
+	 */
+	void testWhitespacesOnlyChunk() throws IOException {
+		StringBuilder content = new StringBuilder();
+		this.appendFiller(content, GeneratedContent.ChunkSize);
+		char[] whitespaces = new char[3 * GeneratedContent.ChunkSize];
+		Arrays.fill(whitespaces, '\n');
+		content.append(whitespaces).append("}");
+		this.assertStreamedIdentical(content.toString(), "white spaces only chunk");
+	}
+
+	/**
+	 * Discards an output nothing was streamed to, like the output of a class kept in memory
+	 *
+	 * @throws IOException
+	 */
+	void testDiscardWithoutStreaming() throws IOException {
+		GeneratedFileOutput output = new GeneratedFileOutput(new File(_directory, "InMemory.java"), UTF8, _directory);
+		GeneratedContent content = new GeneratedContent(output, GeneratedContent.ChunkSize);
+		content.append("class InMemory {}");
+		content.close();
+		output.discard();
+		if (content.isStreamed() || (output.temporaryFile() != null) || (_directory.list().length != 0)) {
+			throw new AssertionError("discarded output created a temporary file: " + output);
+		}
+		_checks++;
+	}
+
+	private void appendFiller(StringBuilder content, int length) {
+		while (content.length() < length) {
+			content.append((char) ('a' + (content.length() % 26)));
+		}
+	}
+
+	/**
+	 * Streams the rendered content one character at a time then in one append, and compares both files with the content kept in memory
+	 */
+	private void assertStreamedIdentical(String rendered, String description) throws IOException {
+		byte[] expected = StringUtils.unescapeXMLEntities(rendered).trim().getBytes(UTF8);
+		for (int pass = 0; pass < 2; pass++) {
+			GeneratedFileOutput output = new GeneratedFileOutput(new File(_directory, "Streamed.java"), UTF8, _directory);
+			// The content is streamed from the first chunk
+			GeneratedContent content = new GeneratedContent(output, GeneratedContent.ChunkSize);
+			if (pass == 0) {
+				for (int i = 0; i < rendered.length(); i++) {
+					content.append(rendered.charAt(i));
+				}
+			} else {
+				content.append(rendered);
+			}
+			content.close();
+			try {
+				if (!content.isStreamed()) {
+					throw new AssertionError(description + ": content not streamed");
+				}
+				if (output.exception() != null) {
+					throw new AssertionError(description + ": " + output.exception());
+				}
+				byte[] streamed = Files.readAllBytes(output.temporaryFile().toPath());
+				if (!Arrays.equals(expected, streamed)) {
+					throw new AssertionError(description + (pass == 0 ? " (appended by character)" : " (appended at once)") + ": streamed " + streamed.length
+							+ " bytes, expected " + expected.length);
+				}
+			} finally {
+				output.discard();
+			}
+			_checks++;
+		}
+	}
+}